@@ -18,11 +18,10 @@ package com.example.filter;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.example.filtercodec.FilterCodec;
+import com.example.filtercodec.FilterSpec;
 import com.google.common.hash.Funnels;
 import com.google.setfilters.cuckoofilter.CuckooFilter;
-import com.google.setfilters.cuckoofilter.CuckooFilterHashFunctions;
-import com.google.setfilters.cuckoofilter.CuckooFilterStrategies;
-import com.google.setfilters.cuckoofilter.SerializedCuckooFilterTable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -30,10 +29,14 @@ import org.json.JSONObject;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 /** Checks the correctness of the cuckoo filter. */
 public class CheckCuckooFilter {
+    /** Non-legacy specs already reported, so each is printed once rather than once per ad. */
+    private static final Set<FilterSpec> sReportedSpecs = new HashSet<>();
 
     public static void main(String[] args) throws Exception {
         if (args.length < 2) {
@@ -110,13 +113,11 @@ public class CheckCuckooFilter {
     static CuckooFilter<String> deserializeFilter(String serializedFilter) {
         Base64.Decoder decoder = Base64.getDecoder();
         byte[] filterBytes = decoder.decode(serializedFilter);
-        SerializedCuckooFilterTable serializedTable =
-                SerializedCuckooFilterTable.createFromByteArray(filterBytes);
-        return CuckooFilter.createFromSerializedTable(
-                serializedTable,
-                CuckooFilterHashFunctions.MURMUR3_128,
-                CuckooFilterStrategies.SIMPLE_MOD,
-                Funnels.stringFunnel(UTF_8));
+        FilterSpec spec = FilterCodec.readSpec(filterBytes);
+        if (!spec.equals(FilterSpec.LEGACY) && sReportedSpecs.add(spec)) {
+            System.out.println("Filter spec: " + spec);
+        }
+        return FilterCodec.decode(filterBytes, Funnels.stringFunnel(UTF_8));
     }
 
     static void checkFilterCorrectness(
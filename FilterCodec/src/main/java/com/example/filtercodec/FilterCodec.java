@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.filtercodec;
+
+import com.google.common.hash.Funnel;
+import com.google.setfilters.cuckoofilter.CuckooFilter;
+import com.google.setfilters.cuckoofilter.CuckooFilterConfig;
+import com.google.setfilters.cuckoofilter.SerializedCuckooFilterTable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Serializes cuckoo filters behind a header that says how to read them back, so the hash
+ * function of newly written filters can change without breaking readers.
+ *
+ * <p>The header is 16 big-endian bytes: the magic {@code "ODPF"}, the format version, the filter
+ * type, the {@link FilterSpec.Hash} id, the {@link FilterSpec.Strategy} id and the 64-bit hash
+ * seed. The serialized table follows it. Data that does not start with the magic is read as a
+ * bare table written with {@link FilterSpec#LEGACY}, and filters with that spec are written as
+ * bare tables, so readers that predate the header can still read them.
+ */
+public final class FilterCodec {
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x4F445046;
+    private static final int VERSION = 1;
+    private static final int TYPE_CUCKOO = 1;
+
+    /** Creates an empty filter that {@link #encode} can serialize with {@code spec}. */
+    public static <T> CuckooFilter<T> newFilter(
+            FilterSpec spec, CuckooFilterConfig.Size size, Funnel<? super T> funnel) {
+        CuckooFilterConfig config =
+                CuckooFilterConfig.newBuilder()
+                        .setSize(size)
+                        .setHashFunction(spec.hashFunction())
+                        .setStrategy(spec.strategy())
+                        .build();
+        return CuckooFilter.createNew(config, funnel);
+    }
+
+    /**
+     * Serializes {@code filter}, which must have been created with {@code spec}. A filter with
+     * the legacy spec is written as its bare table.
+     */
+    public static byte[] encode(FilterSpec spec, CuckooFilter<?> filter) {
+        byte[] table = filter.serializeTable().asByteArray();
+        if (spec.equals(FilterSpec.LEGACY)) {
+            return table;
+        }
+        return ByteBuffer.allocate(HEADER_SIZE + table.length)
+                .putInt(MAGIC)
+                .put((byte) VERSION)
+                .put((byte) TYPE_CUCKOO)
+                .put((byte) spec.getHash().mId)
+                .put((byte) spec.getStrategy().mId)
+                .putLong(spec.getSeed())
+                .put(table)
+                .array();
+    }
+
+    /**
+     * Returns the spec a serialized filter was written with.
+     *
+     * @throws IllegalArgumentException if the header names a version, filter type, hash
+     *     function or strategy this reader does not know
+     */
+    public static FilterSpec readSpec(byte[] data) {
+        if (!hasHeader(data)) {
+            return FilterSpec.LEGACY;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, Integer.BYTES, HEADER_SIZE - Integer.BYTES);
+        int version = header.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported filter format version " + version);
+        }
+        int type = header.get() & 0xFF;
+        if (type != TYPE_CUCKOO) {
+            throw new IllegalArgumentException("Unsupported filter type " + type);
+        }
+        FilterSpec.Hash hash = FilterSpec.Hash.forId(header.get() & 0xFF);
+        FilterSpec.Strategy strategy = FilterSpec.Strategy.forId(header.get() & 0xFF);
+        return new FilterSpec(hash, strategy, header.getLong());
+    }
+
+    /** Deserializes a filter written by {@link #encode}, or a bare legacy table. */
+    public static <T> CuckooFilter<T> decode(byte[] data, Funnel<? super T> funnel) {
+        FilterSpec spec = readSpec(data);
+        byte[] table = hasHeader(data) ? Arrays.copyOfRange(data, HEADER_SIZE, data.length) : data;
+        return CuckooFilter.createFromSerializedTable(
+                SerializedCuckooFilterTable.createFromByteArray(table),
+                spec.hashFunction(),
+                spec.strategy(),
+                funnel);
+    }
+
+    private static boolean hasHeader(byte[] data) {
+        return data.length >= HEADER_SIZE && ByteBuffer.wrap(data).getInt() == MAGIC;
+    }
+
+    private FilterCodec() {}
+}
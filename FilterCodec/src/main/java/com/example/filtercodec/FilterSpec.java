@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.filtercodec;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.setfilters.cuckoofilter.CuckooFilterConfig;
+import com.google.setfilters.cuckoofilter.CuckooFilterHashFunctions;
+import com.google.setfilters.cuckoofilter.CuckooFilterStrategies;
+
+import java.util.Locale;
+
+/**
+ * How a filter maps elements to fingerprints and buckets: its hash function, the hash seed and
+ * the strategy that places fingerprints. A filter can only be read back with the spec it was
+ * written with, so {@link FilterCodec} stores the spec in front of every serialized filter.
+ */
+public final class FilterSpec {
+    /** The spec of every filter serialized before filters carried a header. */
+    public static final FilterSpec LEGACY =
+            new FilterSpec(Hash.MURMUR3_128, Strategy.SIMPLE_MOD, /* seed */ 0);
+
+    /** Hash functions, by the id written to the header. Ids are never reused. */
+    public enum Hash {
+        /** 128-bit Murmur3, as used by filters without a header. */
+        MURMUR3_128(1),
+        /** 64-bit xxHash, which is several times cheaper than Murmur3 on short keys. */
+        XXHASH64(2);
+
+        final int mId;
+
+        Hash(int id) {
+            mId = id;
+        }
+
+        /** Returns the hash function named {@code name}, ignoring case. */
+        public static Hash forName(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+
+        static Hash forId(int id) {
+            for (Hash hash : values()) {
+                if (hash.mId == id) {
+                    return hash;
+                }
+            }
+            throw new IllegalArgumentException("Unknown filter hash function id " + id);
+        }
+    }
+
+    /** Fingerprint placement strategies, by the id written to the header. */
+    public enum Strategy {
+        SIMPLE_MOD(1);
+
+        final int mId;
+
+        Strategy(int id) {
+            mId = id;
+        }
+
+        static Strategy forId(int id) {
+            for (Strategy strategy : values()) {
+                if (strategy.mId == id) {
+                    return strategy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown filter strategy id " + id);
+        }
+    }
+
+    private final Hash mHash;
+    private final Strategy mStrategy;
+    private final long mSeed;
+
+    /**
+     * @param seed the hash seed. Murmur3 takes a 32-bit seed, so with {@link Hash#MURMUR3_128}
+     *     the seed must fit in an int.
+     */
+    public FilterSpec(Hash hash, Strategy strategy, long seed) {
+        if (hash == Hash.MURMUR3_128 && seed != (int) seed) {
+            throw new IllegalArgumentException("Murmur3 seed must fit in 32 bits: " + seed);
+        }
+        mHash = hash;
+        mStrategy = strategy;
+        mSeed = seed;
+    }
+
+    public Hash getHash() {
+        return mHash;
+    }
+
+    public Strategy getStrategy() {
+        return mStrategy;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    CuckooFilterConfig.HashFunction hashFunction() {
+        switch (mHash) {
+            case XXHASH64:
+                return new XxHash64(mSeed);
+            case MURMUR3_128:
+            default:
+                if (mSeed == 0) {
+                    return CuckooFilterHashFunctions.MURMUR3_128;
+                }
+                HashFunction murmur = Hashing.murmur3_128((int) mSeed);
+                return new CuckooFilterConfig.HashFunction() {
+                    @Override
+                    public <T> HashCode hash(T element, Funnel<? super T> funnel) {
+                        return murmur.hashObject(element, funnel);
+                    }
+                };
+        }
+    }
+
+    CuckooFilterConfig.Strategy strategy() {
+        return CuckooFilterStrategies.SIMPLE_MOD;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FilterSpec)) {
+            return false;
+        }
+        FilterSpec other = (FilterSpec) o;
+        return mHash == other.mHash && mStrategy == other.mStrategy && mSeed == other.mSeed;
+    }
+
+    @Override
+    public int hashCode() {
+        return (mHash.hashCode() * 31 + mStrategy.hashCode()) * 31 + Long.hashCode(mSeed);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterSpec{hash=" + mHash + ", strategy=" + mStrategy + ", seed=" + mSeed + "}";
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.filtercodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.PrimitiveSink;
+import com.google.setfilters.cuckoofilter.CuckooFilterConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * The 64-bit xxHash (XXH64) as a cuckoo filter hash function.
+ *
+ * <p>Elements are hashed over the bytes their funnel writes, with multi-byte primitives in
+ * little-endian order as Guava's hashers write them. Strings funneled as UTF-8 and longs, which
+ * the filter hashes to find a fingerprint's alternate bucket, are hashed without a sink.
+ */
+final class XxHash64 implements CuckooFilterConfig.HashFunction {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private static final Funnel<CharSequence> UTF8_FUNNEL = Funnels.stringFunnel(UTF_8);
+    private static final Funnel<Long> LONG_FUNNEL = Funnels.longFunnel();
+
+    private final long mSeed;
+
+    XxHash64(long seed) {
+        mSeed = seed;
+    }
+
+    @Override
+    public <T> HashCode hash(T element, Funnel<? super T> funnel) {
+        if (element instanceof Long && LONG_FUNNEL.equals(funnel)) {
+            return HashCode.fromLong(hashLong((Long) element, mSeed));
+        }
+        if (element instanceof CharSequence && UTF8_FUNNEL.equals(funnel)) {
+            byte[] bytes = element.toString().getBytes(UTF_8);
+            return HashCode.fromLong(hash(bytes, 0, bytes.length, mSeed));
+        }
+        ByteSink sink = new ByteSink();
+        funnel.funnel(element, sink);
+        return HashCode.fromLong(hash(sink.mBytes, 0, sink.mSize, mSeed));
+    }
+
+    /** Returns XXH64 of {@code length} bytes of {@code data} from {@code offset}. */
+    static long hash(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        int i = offset;
+        long h;
+        if (length >= 32) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            for (; i <= end - 32; i += 32) {
+                v1 = round(v1, readLong(data, i));
+                v2 = round(v2, readLong(data, i + 8));
+                v3 = round(v3, readLong(data, i + 16));
+                v4 = round(v4, readLong(data, i + 24));
+            }
+            h = Long.rotateLeft(v1, 1)
+                    + Long.rotateLeft(v2, 7)
+                    + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += length;
+        for (; i <= end - 8; i += 8) {
+            h ^= round(0, readLong(data, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (i <= end - 4) {
+            h ^= (readInt(data, i) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 4;
+        }
+        for (; i < end; i++) {
+            h ^= (data[i] & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+        return avalanche(h);
+    }
+
+    /** Returns XXH64 of the eight little-endian bytes of {@code value}. */
+    static long hashLong(long value, long seed) {
+        long h = seed + P5 + Long.BYTES;
+        h ^= round(0, value);
+        h = Long.rotateLeft(h, 27) * P1 + P4;
+        return avalanche(h);
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long readLong(byte[] data, int i) {
+        return (data[i] & 0xFFL)
+                | (data[i + 1] & 0xFFL) << 8
+                | (data[i + 2] & 0xFFL) << 16
+                | (data[i + 3] & 0xFFL) << 24
+                | (data[i + 4] & 0xFFL) << 32
+                | (data[i + 5] & 0xFFL) << 40
+                | (data[i + 6] & 0xFFL) << 48
+                | (data[i + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] data, int i) {
+        return (data[i] & 0xFF)
+                | (data[i + 1] & 0xFF) << 8
+                | (data[i + 2] & 0xFF) << 16
+                | (data[i + 3] & 0xFF) << 24;
+    }
+
+    /** Collects funneled bytes, writing primitives little-endian like Guava's hashers. */
+    private static final class ByteSink implements PrimitiveSink {
+        private byte[] mBytes = new byte[32];
+        private int mSize;
+
+        private void ensureCapacity(int extra) {
+            if (mSize + extra > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mSize + extra, mBytes.length * 2));
+            }
+        }
+
+        private ByteSink putLittleEndian(long value, int bytes) {
+            ensureCapacity(bytes);
+            for (int b = 0; b < bytes; b++) {
+                mBytes[mSize++] = (byte) (value >>> (8 * b));
+            }
+            return this;
+        }
+
+        @Override
+        public PrimitiveSink putByte(byte b) {
+            return putLittleEndian(b, 1);
+        }
+
+        @Override
+        public PrimitiveSink putBytes(byte[] bytes) {
+            return putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public PrimitiveSink putBytes(byte[] bytes, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(bytes, off, mBytes, mSize, len);
+            mSize += len;
+            return this;
+        }
+
+        @Override
+        public PrimitiveSink putBytes(ByteBuffer bytes) {
+            int len = bytes.remaining();
+            ensureCapacity(len);
+            bytes.get(mBytes, mSize, len);
+            mSize += len;
+            return this;
+        }
+
+        @Override
+        public PrimitiveSink putShort(short s) {
+            return putLittleEndian(s, Short.BYTES);
+        }
+
+        @Override
+        public PrimitiveSink putInt(int i) {
+            return putLittleEndian(i, Integer.BYTES);
+        }
+
+        @Override
+        public PrimitiveSink putLong(long l) {
+            return putLittleEndian(l, Long.BYTES);
+        }
+
+        @Override
+        public PrimitiveSink putFloat(float f) {
+            return putInt(Float.floatToRawIntBits(f));
+        }
+
+        @Override
+        public PrimitiveSink putDouble(double d) {
+            return putLong(Double.doubleToRawLongBits(d));
+        }
+
+        @Override
+        public PrimitiveSink putBoolean(boolean b) {
+            return putByte(b ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public PrimitiveSink putChar(char c) {
+            return putLittleEndian(c, Character.BYTES);
+        }
+
+        @Override
+        public PrimitiveSink putUnencodedChars(CharSequence charSequence) {
+            for (int i = 0; i < charSequence.length(); i++) {
+                putChar(charSequence.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public PrimitiveSink putString(CharSequence charSequence, Charset charset) {
+            return putBytes(charSequence.toString().getBytes(charset));
+        }
+    }
+}
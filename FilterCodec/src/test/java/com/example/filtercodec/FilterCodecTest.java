@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.filtercodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.google.setfilters.cuckoofilter.CuckooFilter;
+import com.google.setfilters.cuckoofilter.CuckooFilterConfig;
+import com.google.setfilters.cuckoofilter.CuckooFilterHashFunctions;
+import com.google.setfilters.cuckoofilter.CuckooFilterStrategies;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class FilterCodecTest {
+    private static final FilterSpec SEEDED =
+            new FilterSpec(FilterSpec.Hash.MURMUR3_128, FilterSpec.Strategy.SIMPLE_MOD, 7);
+    private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(UTF_8);
+    private static final int COUNT = 200;
+    private static final CuckooFilterConfig.Size SIZE =
+            CuckooFilterConfig.Size.computeEfficientSize(0.01, COUNT);
+
+    @Test
+    public void roundTripsMurmur3() {
+        assertRoundTrips(FilterSpec.LEGACY);
+        assertRoundTrips(SEEDED);
+    }
+
+    @Test
+    public void roundTripsXxHash64() {
+        assertRoundTrips(
+                new FilterSpec(FilterSpec.Hash.XXHASH64, FilterSpec.Strategy.SIMPLE_MOD, 0));
+        assertRoundTrips(
+                new FilterSpec(
+                        FilterSpec.Hash.XXHASH64, FilterSpec.Strategy.SIMPLE_MOD, 1L << 40));
+    }
+
+    @Test
+    public void decodesBareTableAsLegacy() {
+        CuckooFilter<CharSequence> filter =
+                CuckooFilter.createNew(
+                        CuckooFilterConfig.newBuilder()
+                                .setSize(SIZE)
+                                .setHashFunction(CuckooFilterHashFunctions.MURMUR3_128)
+                                .setStrategy(CuckooFilterStrategies.SIMPLE_MOD)
+                                .build(),
+                        FUNNEL);
+        insertAll(filter);
+        byte[] table = filter.serializeTable().asByteArray();
+
+        assertEquals(FilterSpec.LEGACY, FilterCodec.readSpec(table));
+        assertContainsAll(FilterCodec.decode(table, FUNNEL));
+        // The legacy spec is written without a header, so older readers can still read it.
+        assertArrayEquals(table, FilterCodec.encode(FilterSpec.LEGACY, filter));
+    }
+
+    @Test
+    public void writesHeaderOnlyForOtherSpecs() {
+        CuckooFilter<CharSequence> filter = FilterCodec.newFilter(SEEDED, SIZE, FUNNEL);
+        insertAll(filter);
+        byte[] table = filter.serializeTable().asByteArray();
+
+        byte[] encoded = FilterCodec.encode(SEEDED, filter);
+        assertEquals(FilterCodec.HEADER_SIZE + table.length, encoded.length);
+        assertEquals('O', encoded[0]);
+    }
+
+    @Test
+    public void readSpecRejectsUnknownHeaderFields() {
+        byte[] encoded = FilterCodec.encode(SEEDED, FilterCodec.newFilter(SEEDED, SIZE, FUNNEL));
+        assertThrows(IllegalArgumentException.class, () -> FilterCodec.readSpec(with(encoded, 4)));
+        assertThrows(IllegalArgumentException.class, () -> FilterCodec.readSpec(with(encoded, 5)));
+        assertThrows(IllegalArgumentException.class, () -> FilterCodec.readSpec(with(encoded, 6)));
+        assertThrows(IllegalArgumentException.class, () -> FilterCodec.readSpec(with(encoded, 7)));
+    }
+
+    @Test
+    public void hashForNameIgnoresCase() {
+        assertEquals(FilterSpec.Hash.XXHASH64, FilterSpec.Hash.forName("xxhash64"));
+        assertEquals(FilterSpec.Hash.MURMUR3_128, FilterSpec.Hash.forName("Murmur3_128"));
+    }
+
+    private static void assertRoundTrips(FilterSpec spec) {
+        CuckooFilter<CharSequence> filter = FilterCodec.newFilter(spec, SIZE, FUNNEL);
+        insertAll(filter);
+        byte[] encoded = FilterCodec.encode(spec, filter);
+
+        assertEquals(spec, FilterCodec.readSpec(encoded));
+        CuckooFilter<CharSequence> decoded = FilterCodec.decode(encoded, FUNNEL);
+        assertContainsAll(decoded);
+        assertArrayEquals(encoded, FilterCodec.encode(spec, decoded));
+    }
+
+    private static void insertAll(CuckooFilter<CharSequence> filter) {
+        for (int i = 0; i < COUNT; i++) {
+            assertTrue(filter.insert("com.example.app" + i));
+        }
+    }
+
+    private static void assertContainsAll(CuckooFilter<CharSequence> filter) {
+        for (int i = 0; i < COUNT; i++) {
+            assertTrue(filter.contains("com.example.app" + i));
+        }
+    }
+
+    /** Returns a copy of {@code data} with the header byte at {@code index} set to 0xFF. */
+    private static byte[] with(byte[] data, int index) {
+        byte[] copy = data.clone();
+        copy[index] = (byte) 0xFF;
+        return copy;
+    }
+}
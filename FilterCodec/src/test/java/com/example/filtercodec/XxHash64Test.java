@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.filtercodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class XxHash64Test {
+    private static final String ALPHANUMERIC =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final String DIGITS =
+            "1234567890123456789012345678901234567890"
+                    + "1234567890123456789012345678901234567890";
+
+    @Test
+    public void matchesReferenceVectors() {
+        assertEquals(0xef46db3751d8e999L, xxh64("", 0));
+        assertEquals(0xd24ec4f1a98c6e5bL, xxh64("a", 0));
+        assertEquals(0x44bc2cf5ad770999L, xxh64("abc", 0));
+        assertEquals(0x066ed728fceeb3beL, xxh64("message digest", 0));
+        assertEquals(0xcfe1f278fa89835cL, xxh64("abcdefghijklmnopqrstuvwxyz", 0));
+        assertEquals(0xaaa46907d3047814L, xxh64(ALPHANUMERIC, 0));
+        assertEquals(0xe04a477f19ee145dL, xxh64(DIGITS, 0));
+    }
+
+    @Test
+    public void matchesReferenceVectorsWithSeed() {
+        assertEquals(0xbea9ca8199328908L, xxh64("abc", 1));
+        assertEquals(0x0b303d920ec349dfL, xxh64("", 0x9E3779B185EBCA8DL));
+        assertEquals(0x85bf67b44557c5edL, xxh64("com.example.app", 0x123456789L));
+    }
+
+    @Test
+    public void hashesOffsetRange() {
+        byte[] padded = ("xx" + "message digest" + "yy").getBytes(UTF_8);
+        assertEquals(0x066ed728fceeb3beL, XxHash64.hash(padded, 2, padded.length - 4, 0));
+    }
+
+    @Test
+    public void fastPathsMatchFunneledBytes() {
+        XxHash64 hash = new XxHash64(0x123456789L);
+        // Funnels the same bytes as the fast paths, but goes through the sink.
+        Funnel<CharSequence> utf8 = (value, sink) -> sink.putString(value, UTF_8);
+        Funnel<Long> longs = (value, sink) -> sink.putLong(value);
+        for (String value : new String[] {"", "abc", ALPHANUMERIC, DIGITS, "caf\u00e9"}) {
+            assertEquals(
+                    hash.hash(value, utf8).asLong(),
+                    hash.hash(value, Funnels.stringFunnel(UTF_8)).asLong());
+        }
+        for (long value : new long[] {0L, 42L, -1L, Long.MIN_VALUE}) {
+            assertEquals(
+                    hash.hash(value, longs).asLong(),
+                    hash.hash(value, Funnels.longFunnel()).asLong());
+        }
+    }
+
+    @Test
+    public void hashesLongsAsLittleEndianBytes() {
+        assertEquals(0xb556806fb6d14353L, new XxHash64(0).hash(42L, Funnels.longFunnel()).asLong());
+    }
+
+    private static long xxh64(String value, long seed) {
+        byte[] bytes = value.getBytes(UTF_8);
+        return XxHash64.hash(bytes, 0, bytes.length, seed);
+    }
+}
@@ -16,12 +16,11 @@
 
 package com.example.filter;
 
+import com.example.filtercodec.FilterCodec;
+import com.example.filtercodec.FilterSpec;
 import com.google.common.hash.Funnels;
 import com.google.setfilters.cuckoofilter.CuckooFilter;
 import com.google.setfilters.cuckoofilter.CuckooFilterConfig;
-import com.google.setfilters.cuckoofilter.CuckooFilterHashFunctions;
-import com.google.setfilters.cuckoofilter.CuckooFilterStrategies;
-import com.google.setfilters.cuckoofilter.SerializedCuckooFilterTable;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -31,17 +30,30 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Base64;
 
-/** Replace lists of targeting criteria in a JSON ad repository with serialized cuckoo filters. */
+/**
+ * Replace lists of targeting criteria in a JSON ad repository with serialized cuckoo filters.
+ *
+ * <p>Lists may be spelled out as strings, or as term ids into the repository's {@code
+ * termDictionary} entry. Filters always hold the strings, so the dictionary is dropped once no
+ * ad refers to it.
+ */
 public class MakeCuckooFilter {
+    /** Key of the repository entry that maps term ids back to terms. */
+    static final String TERM_DICTIONARY_KEY = "termDictionary";
 
     public static void main(String[] args) throws Exception {
         if (args.length < 1) {
             System.out.println(
-                    "Usage: java -jar MakeCuckooFilter.jar <src_file_name> [target_fp_rate]");
+                    "Usage: java -jar MakeCuckooFilter.jar <src_file_name> [target_fp_rate]"
+                            + " [hash_function]");
             System.out.println("");
             System.out.println("src_file_name: Input JSON ad repository file");
             System.out.println(
                     "target_fp_rate: Target false positive rate. Optional, default 0.01");
+            System.out.println(
+                    "hash_function: murmur3_128 or xxhash64. Optional, default murmur3_128."
+                            + " murmur3_128 filters are bare tables as before; xxhash64 is"
+                            + " written to each filter's header, so readers pick it up");
             return;
         }
         JSONObject json = readFile(args[0]);
@@ -49,7 +61,24 @@ public class MakeCuckooFilter {
         if (args.length > 1) {
             targetFpRate = Double.parseDouble(args[1]);
         }
+        FilterSpec spec = FilterSpec.LEGACY;
+        if (args.length > 2) {
+            spec =
+                    new FilterSpec(
+                            FilterSpec.Hash.forName(args[2]),
+                            FilterSpec.Strategy.SIMPLE_MOD,
+                            /* seed */ 0);
+        }
         JSONArray contents = json.getJSONArray("contents");
+        int dictionaryRow = -1;
+        JSONArray dictionary = null;
+        for (int i = 0; i < contents.length(); i++) {
+            JSONObject row = contents.getJSONObject(i);
+            if (row.optString("key").equals(TERM_DICTIONARY_KEY)) {
+                dictionaryRow = i;
+                dictionary = new JSONArray(row.getString("data"));
+            }
+        }
         for (int i = 0; i < contents.length(); i++) {
             JSONObject row = contents.getJSONObject(i);
             String dataStr = row.getString("data");
@@ -57,49 +86,68 @@ public class MakeCuckooFilter {
                 continue;
             }
             JSONObject data = new JSONObject(dataStr);
-            if (data.keySet().contains("excludes")) {
-                JSONArray values = data.getJSONArray("excludes");
-                data.put("excludeFilter", createFilter(values, targetFpRate, values.length()));
-                data.remove("excludes");
-            }
-            if (data.keySet().contains("keywords")) {
-                JSONArray values = data.getJSONArray("keywords");
-                data.put("keywordFilter", createFilter(values, targetFpRate, values.length()));
-                data.remove("keywords");
-            }
-            if (data.keySet().contains("apps")) {
-                JSONArray values = data.getJSONArray("apps");
-                data.put("appFilter", createFilter(values, targetFpRate, values.length()));
-                data.remove("apps");
-            }
+            replaceWithFilter(data, "excludes", "excludeFilter", dictionary, targetFpRate, spec);
+            replaceWithFilter(data, "keywords", "keywordFilter", dictionary, targetFpRate, spec);
+            replaceWithFilter(data, "apps", "appFilter", dictionary, targetFpRate, spec);
             row.put("data", data.toString());
         }
+        if (dictionaryRow >= 0) {
+            contents.remove(dictionaryRow);
+        }
         System.out.println(json.toString(2));
     }
 
+    /**
+     * Replaces the list {@code field} of {@code data}, or the id list named after it such as
+     * {@code keywordIds} for {@code keywords}, with a filter of its terms named {@code
+     * filterField}.
+     */
+    static void replaceWithFilter(
+            JSONObject data,
+            String field,
+            String filterField,
+            JSONArray dictionary,
+            double targetFpRate,
+            FilterSpec spec) {
+        String idsField = field.substring(0, field.length() - 1) + "Ids";
+        if (!data.has(field) && !data.has(idsField)) {
+            return;
+        }
+        JSONArray values = data.has(field) ? data.getJSONArray(field) : new JSONArray();
+        if (data.has(idsField)) {
+            if (dictionary == null) {
+                throw new IllegalArgumentException(
+                        idsField + " requires a " + TERM_DICTIONARY_KEY + " entry");
+            }
+            JSONArray ids = data.getJSONArray(idsField);
+            for (int i = 0; i < ids.length(); i++) {
+                values.put(dictionary.getString(ids.getInt(i)));
+            }
+        }
+        data.remove(field);
+        data.remove(idsField);
+        data.put(filterField, createFilter(values, targetFpRate, values.length(), spec));
+    }
+
     static JSONObject readFile(String filename) throws Exception {
         JSONObject result =
                 new JSONObject(Files.readString(Path.of(filename), StandardCharsets.UTF_8));
         return result;
     }
 
-    static String createFilter(JSONArray contents, double targetFpRate, long countUpperBound) {
-        CuckooFilterConfig config =
-                CuckooFilterConfig.newBuilder()
-                        .setSize(
-                                CuckooFilterConfig.Size.computeEfficientSize(
-                                        targetFpRate, countUpperBound))
-                        .setHashFunction(CuckooFilterHashFunctions.MURMUR3_128)
-                        .setStrategy(CuckooFilterStrategies.SIMPLE_MOD)
-                        .build();
+    static String createFilter(
+            JSONArray contents, double targetFpRate, long countUpperBound, FilterSpec spec) {
         CuckooFilter<String> filter =
-                CuckooFilter.createNew(config, Funnels.stringFunnel(StandardCharsets.UTF_8));
+                FilterCodec.newFilter(
+                        spec,
+                        CuckooFilterConfig.Size.computeEfficientSize(
+                                targetFpRate, countUpperBound),
+                        Funnels.stringFunnel(StandardCharsets.UTF_8));
         for (int i = 0; i < contents.length(); i++) {
             filter.insert(contents.getString(i));
         }
-        SerializedCuckooFilterTable serializedFilter = filter.serializeTable();
         Base64.Encoder encoder = Base64.getEncoder();
-        return encoder.encodeToString(serializedFilter.asByteArray());
+        return encoder.encodeToString(FilterCodec.encode(spec, filter));
     }
 
     private MakeCuckooFilter() {}
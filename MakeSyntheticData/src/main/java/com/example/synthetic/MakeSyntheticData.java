@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.synthetic;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Writes a synthetic JSON ad repository in the format of the sample network's test data, for
+ * testing at scale.
+ *
+ * <p>Keywords, apps and advertisers are drawn from Zipfian popularity distributions, and the
+ * sizes of targeting lists follow a Zipfian distribution too, so most lists are short and a few
+ * are long. Some ads exclude one of a small number of shared brand-safety lists instead of a
+ * list of their own. The same seed always produces the same repository, and the optional
+ * installed-app set is drawn from the same app distribution so that it overlaps the targeting
+ * the way real installs would.
+ */
+public class MakeSyntheticData {
+    private static final String USAGE =
+            String.join(
+                    "\n",
+                    "Usage: java -jar MakeSyntheticData.jar <num_ads> [--option=value ...]",
+                    "",
+                    "num_ads: Number of ads to generate",
+                    "--seed: Random seed. Default 1",
+                    "--embedding_dim: Values per ad embedding. Default 100, which the sample"
+                            + " model expects",
+                    "--keywords: Size of the keyword vocabulary. Default 10000",
+                    "--apps: Size of the app vocabulary. Default 20000",
+                    "--advertisers: Number of distinct landing pages. Default 1000",
+                    "--zipf: Exponent of the keyword, app and advertiser popularity."
+                            + " Default 1.1",
+                    "--max_list_size: Largest keyword, app or exclude list. Default 50",
+                    "--brand_safety_lists: Number of shared exclude lists. Default 20",
+                    "--brand_safety_list_size: Entries per shared exclude list. Default 100",
+                    "--templates: Number of rendering templates. Default 3",
+                    "--examples: Number of training example rows. Default 100",
+                    "--example_format: \"criteo\" or \"mnist\". Default criteo",
+                    "--model: TFLite model file to include as model1. Optional",
+                    "--sync_token: Sync token of the repository. Default 1662138000",
+                    "--installed_apps: Number of installed apps to draw. Default 0",
+                    "--installed_apps_file: File to write the installed apps to, as a JSON"
+                            + " array. Required with --installed_apps",
+                    "--term_dictionary: If true, write targeting terms once to a termDictionary"
+                            + " entry and list their ids in keywordIds, appIds and excludeIds."
+                            + " Default false");
+
+    private static final String KEYWORD_PREFIX = "keyword";
+    private static final String APP_PREFIX = "com.example.app";
+    // Share of ads with each kind of targeting; every ad may have any combination.
+    private static final double KEYWORD_TARGETED_SHARE = 0.6;
+    private static final double APP_TARGETED_SHARE = 0.3;
+    private static final double EXCLUDING_SHARE = 0.4;
+    // Share of excluding ads that use a shared brand-safety list rather than their own.
+    private static final double BRAND_SAFETY_SHARE = 0.75;
+    private static final double TEMPLATE_SHARE = 0.5;
+    // List sizes fall off faster than term popularity.
+    private static final double LIST_SIZE_ZIPF_EXPONENT = 1.5;
+    private static final int MNIST_NUM_PIXELS = 784;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        Options options = Options.parse(args);
+        Random random = new Random(options.mSeed);
+        Zipf keywords = new Zipf(options.mKeywords, options.mZipfExponent);
+        Zipf apps = new Zipf(options.mApps, options.mZipfExponent);
+        Zipf advertisers = new Zipf(options.mAdvertisers, options.mZipfExponent);
+        Zipf listSizes = new Zipf(options.mMaxListSize, LIST_SIZE_ZIPF_EXPONENT);
+
+        List<JSONArray> brandSafetyLists = new ArrayList<>();
+        for (int i = 0; i < options.mBrandSafetyLists; i++) {
+            brandSafetyLists.add(
+                    excludeList(options.mBrandSafetyListSize, keywords, apps, random));
+        }
+
+        // Ids in order of first use, so that popular terms get small ids.
+        Map<String, Integer> dictionary = options.mTermDictionary ? new LinkedHashMap<>() : null;
+        try (PrintWriter out =
+                new PrintWriter(
+                        new BufferedWriter(
+                                new OutputStreamWriter(System.out, StandardCharsets.UTF_8)))) {
+            out.println("{");
+            out.println("  \"syncToken\": " + options.mSyncToken + ",");
+            out.print("  \"contents\": [");
+            boolean first = true;
+            for (int i = 1; i <= options.mNumAds; i++) {
+                JSONObject ad = new JSONObject();
+                ad.put("max_cpc", maxCpc(random));
+                ad.put(
+                        "landingPage",
+                        "https://advertiser" + advertisers.next(random) + ".example/");
+                ad.put("text", "Ad " + i);
+                if (options.mTemplates > 0 && random.nextDouble() < TEMPLATE_SHARE) {
+                    ad.put("template", "template" + (1 + random.nextInt(options.mTemplates)));
+                }
+                if (random.nextDouble() < KEYWORD_TARGETED_SHARE) {
+                    putTerms(
+                            ad,
+                            "keywords",
+                            terms(KEYWORD_PREFIX, 1 + listSizes.next(random), keywords, random),
+                            dictionary);
+                }
+                if (random.nextDouble() < APP_TARGETED_SHARE) {
+                    putTerms(
+                            ad,
+                            "apps",
+                            terms(APP_PREFIX, 1 + listSizes.next(random), apps, random),
+                            dictionary);
+                }
+                if (random.nextDouble() < EXCLUDING_SHARE) {
+                    boolean shared =
+                            !brandSafetyLists.isEmpty()
+                                    && random.nextDouble() < BRAND_SAFETY_SHARE;
+                    putTerms(
+                            ad,
+                            "excludes",
+                            shared
+                                    ? brandSafetyLists.get(random.nextInt(brandSafetyLists.size()))
+                                    : excludeList(
+                                            1 + listSizes.next(random), keywords, apps, random),
+                            dictionary);
+                }
+                ad.put("embedding_features", embedding(options.mEmbeddingDim, random));
+                first = writeEntry(out, first, "ad" + i, ad.toString(), null);
+            }
+            for (int i = 1; i <= options.mTemplates; i++) {
+                first = writeEntry(out, first, "template" + i, template(i), null);
+            }
+            for (int i = 1; i <= options.mExamples; i++) {
+                String row =
+                        options.mExampleFormat.equals("mnist")
+                                ? mnistRow(random)
+                                : criteoRow(random);
+                first = writeEntry(out, first, "example" + i, row, null);
+            }
+            if (dictionary != null) {
+                first =
+                        writeEntry(
+                                out,
+                                first,
+                                "termDictionary",
+                                new JSONArray(dictionary.keySet()).toString(),
+                                null);
+            }
+            if (options.mModel != null) {
+                byte[] model = Files.readAllBytes(Path.of(options.mModel));
+                first =
+                        writeEntry(
+                                out,
+                                first,
+                                "model1",
+                                Base64.getEncoder().encodeToString(model),
+                                "base64");
+            }
+            out.println();
+            out.println("  ]");
+            out.println("}");
+        }
+
+        if (options.mInstalledApps > 0) {
+            // Drawn from its own stream, so the ads do not change with the installed-app count.
+            JSONArray installed =
+                    terms(
+                            APP_PREFIX,
+                            options.mInstalledApps,
+                            apps,
+                            new Random(options.mSeed ^ 0x5DEECE66DL));
+            Files.writeString(
+                    Path.of(options.mInstalledAppsFile),
+                    installed.toString(2),
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    static boolean writeEntry(
+            PrintWriter out, boolean first, String key, String data, String encoding) {
+        out.println(first ? "" : ",");
+        out.print("    {\"key\": " + JSONObject.quote(key));
+        if (encoding != null) {
+            out.print(", \"encoding\": " + JSONObject.quote(encoding));
+        }
+        out.print(", \"data\": " + JSONObject.quote(data) + "}");
+        return false;
+    }
+
+    /**
+     * Adds {@code terms} to {@code ad} as the string list {@code field}, or with a dictionary as
+     * the sorted id list named after it, such as {@code keywordIds} for {@code keywords}.
+     */
+    static void putTerms(
+            JSONObject ad, String field, JSONArray terms, Map<String, Integer> dictionary) {
+        if (dictionary == null) {
+            ad.put(field, terms);
+            return;
+        }
+        int[] ids = new int[terms.length()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = dictionary.computeIfAbsent(terms.getString(i), t -> dictionary.size());
+        }
+        Arrays.sort(ids);
+        ad.put(field.substring(0, field.length() - 1) + "Ids", new JSONArray(ids));
+    }
+
+    /** Returns up to {@code size} distinct terms, fewer only if the vocabulary is smaller. */
+    static JSONArray terms(String prefix, int size, Zipf popularity, Random random) {
+        int target = Math.min(size, popularity.size());
+        Set<Integer> ranks = new LinkedHashSet<>();
+        // Popular terms repeat often, so give up on rare ones after a bounded number of draws.
+        for (int draws = 0; ranks.size() < target && draws < target * 20; draws++) {
+            ranks.add(popularity.next(random));
+        }
+        JSONArray terms = new JSONArray();
+        for (int rank : ranks) {
+            terms.put(prefix + rank);
+        }
+        return terms;
+    }
+
+    /** Returns an exclude list, which mixes keywords and apps as exclusions match either. */
+    static JSONArray excludeList(int size, Zipf keywords, Zipf apps, Random random) {
+        JSONArray excludes = terms(APP_PREFIX, (size + 1) / 2, apps, random);
+        JSONArray excludedKeywords = terms(KEYWORD_PREFIX, size / 2, keywords, random);
+        for (int i = 0; i < excludedKeywords.length(); i++) {
+            excludes.put(excludedKeywords.get(i));
+        }
+        return excludes;
+    }
+
+    // Log-normal around 1.0, as bids cluster with a long tail.
+    static double maxCpc(Random random) {
+        return Math.round(Math.exp(random.nextGaussian() * 0.8) * 100) / 100.0 + 0.01;
+    }
+
+    static String embedding(int dim, Random random) {
+        StringBuilder embedding = new StringBuilder();
+        for (int i = 0; i < dim; i++) {
+            if (i > 0) {
+                embedding.append(", ");
+            }
+            embedding.append(String.format(Locale.ROOT, "%.4f", random.nextFloat()));
+        }
+        return embedding.toString();
+    }
+
+    static String template(int index) {
+        return "<img src=\"$impressionUrl\" alt=\"\">\n<a href=\"$clickUrl\">${adText} ("
+                + index
+                + ")</a>";
+    }
+
+    static String criteoRow(Random random) {
+        StringBuilder row = new StringBuilder().append(random.nextInt(4) == 0 ? 1 : 0);
+        for (int i = 0; i < 13; i++) {
+            row.append(',');
+            // Like the real data, some integer features are missing.
+            if (random.nextInt(5) != 0) {
+                row.append(random.nextInt(1000));
+            }
+        }
+        for (int i = 0; i < 26; i++) {
+            row.append(',');
+            if (random.nextInt(10) != 0) {
+                row.append(String.format("%08x", random.nextInt()));
+            }
+        }
+        return row.toString();
+    }
+
+    static String mnistRow(Random random) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < MNIST_NUM_PIXELS; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            // Most pixels of a digit are blank.
+            row.append(random.nextInt(4) == 0 ? random.nextInt(256) : 0);
+        }
+        return row.append(':').append(random.nextInt(10)).toString();
+    }
+
+    /** Draws ranks in [0, size) with probability proportional to 1 / (rank + 1)^exponent. */
+    static final class Zipf {
+        private final double[] mCumulative;
+
+        Zipf(int size, double exponent) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Zipf distribution needs a positive size");
+            }
+            mCumulative = new double[size];
+            double total = 0.0;
+            for (int rank = 0; rank < size; rank++) {
+                total += 1.0 / Math.pow(rank + 1, exponent);
+                mCumulative[rank] = total;
+            }
+            for (int rank = 0; rank < size; rank++) {
+                mCumulative[rank] /= total;
+            }
+        }
+
+        int size() {
+            return mCumulative.length;
+        }
+
+        int next(Random random) {
+            int index = Arrays.binarySearch(mCumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, mCumulative.length - 1);
+        }
+    }
+
+    static final class Options {
+        long mNumAds;
+        long mSeed = 1;
+        int mEmbeddingDim = 100;
+        int mKeywords = 10000;
+        int mApps = 20000;
+        int mAdvertisers = 1000;
+        double mZipfExponent = 1.1;
+        int mMaxListSize = 50;
+        int mBrandSafetyLists = 20;
+        int mBrandSafetyListSize = 100;
+        int mTemplates = 3;
+        int mExamples = 100;
+        String mExampleFormat = "criteo";
+        String mModel;
+        long mSyncToken = 1662138000L;
+        int mInstalledApps;
+        String mInstalledAppsFile;
+        boolean mTermDictionary;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            options.mNumAds = Long.parseLong(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                int equals = arg.indexOf('=');
+                if (!arg.startsWith("--") || equals < 0) {
+                    throw new IllegalArgumentException("Expected --option=value: " + arg);
+                }
+                String name = arg.substring(2, equals);
+                String value = arg.substring(equals + 1);
+                switch (name) {
+                    case "seed":
+                        options.mSeed = Long.parseLong(value);
+                        break;
+                    case "embedding_dim":
+                        options.mEmbeddingDim = Integer.parseInt(value);
+                        break;
+                    case "keywords":
+                        options.mKeywords = Integer.parseInt(value);
+                        break;
+                    case "apps":
+                        options.mApps = Integer.parseInt(value);
+                        break;
+                    case "advertisers":
+                        options.mAdvertisers = Integer.parseInt(value);
+                        break;
+                    case "zipf":
+                        options.mZipfExponent = Double.parseDouble(value);
+                        break;
+                    case "max_list_size":
+                        options.mMaxListSize = Integer.parseInt(value);
+                        break;
+                    case "brand_safety_lists":
+                        options.mBrandSafetyLists = Integer.parseInt(value);
+                        break;
+                    case "brand_safety_list_size":
+                        options.mBrandSafetyListSize = Integer.parseInt(value);
+                        break;
+                    case "templates":
+                        options.mTemplates = Integer.parseInt(value);
+                        break;
+                    case "examples":
+                        options.mExamples = Integer.parseInt(value);
+                        break;
+                    case "example_format":
+                        options.mExampleFormat = value;
+                        break;
+                    case "model":
+                        options.mModel = value;
+                        break;
+                    case "sync_token":
+                        options.mSyncToken = Long.parseLong(value);
+                        break;
+                    case "installed_apps":
+                        options.mInstalledApps = Integer.parseInt(value);
+                        break;
+                    case "installed_apps_file":
+                        options.mInstalledAppsFile = value;
+                        break;
+                    case "term_dictionary":
+                        options.mTermDictionary = Boolean.parseBoolean(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + name);
+                }
+            }
+            if (!options.mExampleFormat.equals("criteo")
+                    && !options.mExampleFormat.equals("mnist")) {
+                throw new IllegalArgumentException(
+                        "Unknown example format: " + options.mExampleFormat);
+            }
+            if (options.mInstalledApps > 0 && options.mInstalledAppsFile == null) {
+                throw new IllegalArgumentException("--installed_apps needs --installed_apps_file");
+            }
+            return options;
+        }
+    }
+
+    private MakeSyntheticData() {}
+}
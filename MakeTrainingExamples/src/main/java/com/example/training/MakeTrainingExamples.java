@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.training;
+
+import com.google.protobuf.ByteString;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.tensorflow.example.BytesList;
+import org.tensorflow.example.Example;
+import org.tensorflow.example.Feature;
+import org.tensorflow.example.Features;
+import org.tensorflow.example.FloatList;
+import org.tensorflow.example.Int64List;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+/**
+ * Replaces text training examples in a JSON ad repository with serialized tf.Example protos, so
+ * that the device can pass them to the trainer without parsing.
+ *
+ * <p>The output also gets a {@link #EXAMPLE_FORMAT_KEY} row. The device passes example rows
+ * through unparsed only when that row is present, so it never guesses the format from the
+ * bytes.
+ */
+public class MakeTrainingExamples {
+    static final String EXAMPLE_FORMAT_KEY = "training_example_format";
+    static final String SERIALIZED_EXAMPLE_FORMAT = "tf.Example";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println(
+                    "Usage: java -jar MakeTrainingExamples.jar <src_file_name> <format>");
+            System.out.println("");
+            System.out.println("src_file_name: Input JSON ad repository file");
+            System.out.println(
+                    "format: Format of the example rows, either \"criteo\" (CSV) or \"mnist\""
+                            + " (784 comma separated pixels, a colon and the label)");
+            return;
+        }
+        JSONObject json = readFile(args[0]);
+        String format = args[1];
+        if (!format.equals("criteo") && !format.equals("mnist")) {
+            throw new IllegalArgumentException("Unknown example format: " + format);
+        }
+        JSONArray contents = json.getJSONArray("contents");
+        for (int i = 0; i < contents.length(); i++) {
+            if (contents.getJSONObject(i).getString("key").equals(EXAMPLE_FORMAT_KEY)) {
+                throw new IllegalArgumentException(
+                        "Examples are already serialized: " + args[0] + " has a "
+                                + EXAMPLE_FORMAT_KEY + " row");
+            }
+        }
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int i = 0; i < contents.length(); i++) {
+            JSONObject row = contents.getJSONObject(i);
+            if (!row.getString("key").startsWith("example")) {
+                continue;
+            }
+            String dataStr = row.getString("data");
+            if ("base64".equals(row.optString("encoding"))) {
+                dataStr = new String(Base64.getDecoder().decode(dataStr), StandardCharsets.UTF_8);
+            }
+            Example example =
+                    format.equals("criteo")
+                            ? convertToCriteoExample(dataStr)
+                            : convertToMnistExample(dataStr);
+            row.put("data", encoder.encodeToString(example.toByteArray()));
+            row.put("encoding", "base64");
+        }
+        contents.put(
+                new JSONObject()
+                        .put("key", EXAMPLE_FORMAT_KEY)
+                        .put("data", SERIALIZED_EXAMPLE_FORMAT));
+        System.out.println(json.toString(2));
+    }
+
+    static JSONObject readFile(String filename) throws Exception {
+        JSONObject result =
+                new JSONObject(Files.readString(Path.of(filename), StandardCharsets.UTF_8));
+        return result;
+    }
+
+    // Features are inserted in the same order as the on-device converters so that the
+    // serialized bytes are identical.
+    static Example convertToCriteoExample(String value) {
+        String[] splitExample = value.split(",", -1);
+        if (splitExample.length < 40) {
+            throw new IllegalArgumentException("Criteo example must have 40 columns: " + value);
+        }
+        Features.Builder featuresBuilder = Features.newBuilder();
+        featuresBuilder.putFeature("clicked", convertLongToFeature(splitExample[0]));
+        int count = 1;
+        for (; count < 14; count++) {
+            featuresBuilder.putFeature(
+                    "int-feature-" + count, convertLongToFeature(splitExample[count]));
+        }
+        for (; count < 40; count++) {
+            featuresBuilder.putFeature(
+                    "categorical-feature-" + count, convertStringToFeature(splitExample[count]));
+        }
+        return Example.newBuilder().setFeatures(featuresBuilder).build();
+    }
+
+    static Example convertToMnistExample(String value) {
+        String[] splitExample = value.split(":", -1);
+        String[] splitPixels = splitExample[0].split(",", -1);
+        FloatList.Builder floatListBuilder = FloatList.newBuilder();
+        for (int count = 0; count < 784; count++) {
+            floatListBuilder.addValue(Float.parseFloat(splitPixels[count]));
+        }
+        Features.Builder featuresBuilder = Features.newBuilder();
+        featuresBuilder.putFeature(
+                "x", Feature.newBuilder().setFloatList(floatListBuilder).build());
+        featuresBuilder.putFeature("y", convertLongToFeature(splitExample[1]));
+        return Example.newBuilder().setFeatures(featuresBuilder).build();
+    }
+
+    static Feature convertLongToFeature(String value) {
+        long lValue = value.isEmpty() ? 0L : Long.parseLong(value);
+        return Feature.newBuilder().setInt64List(Int64List.newBuilder().addValue(lValue)).build();
+    }
+
+    static Feature convertStringToFeature(String value) {
+        return Feature.newBuilder()
+                .setBytesList(BytesList.newBuilder().addValue(ByteString.copyFromUtf8(value)))
+                .build();
+    }
+
+    private MakeTrainingExamples() {}
+}
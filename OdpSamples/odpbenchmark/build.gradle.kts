@@ -0,0 +1,65 @@
+// Runs the sample network's handler on the JVM under JMH. The framework classes it calls are
+// replaced by the in-memory stand-ins in src/main/java, so this module never builds an APK.
+// The handler's unit tests in src/test/java run against the same stand-ins.
+//
+//   ./gradlew :odpbenchmark:test
+//   ./gradlew :odpbenchmark:jmh
+//   ./gradlew :odpbenchmark:jmh -PjmhIncludes=ExecuteBenchmark -PjmhParams=catalogSize=1000
+//   ./gradlew :odpbenchmark:loadTest --args="--concurrency=16 --requests=2000"
+plugins {
+  id("java")
+  id("me.champeau.jmh")
+}
+
+java {
+  sourceCompatibility = JavaVersion.VERSION_17
+  targetCompatibility = JavaVersion.VERSION_17
+}
+
+sourceSets.getByName("main") {
+  java.srcDir("../odpsamplenetwork/src/main/java")
+  java.srcDir("../../setfilters/setfilters/src")
+  java.srcDir("../../FilterCodec/src/main/java")
+  // The service only wires the handler to the platform; benchmarks construct the handler.
+  java.exclude("**/SampleService.java")
+  // The client's load driver is plain Java; the activity that drives it on a device is not.
+  java.srcDir("../odpclient/src/main/java")
+  java.exclude("**/MainActivity.java")
+}
+
+dependencies {
+  implementation("androidx.annotation:annotation:1.7.1")
+  implementation("androidx.concurrent:concurrent-futures:1.1.0")
+  implementation("com.google.code.gson:gson:2.10.1")
+  implementation("com.google.guava:guava:33.0.0-jre")
+  // The tests check the hand-written tf.Example serializers against the protobuf classes.
+  testImplementation("com.google.protobuf:protobuf-java:3.25.1")
+  testImplementation("junit:junit:4.13.2")
+  testImplementation("org.tensorflow:proto:1.15.0")
+}
+
+jmh {
+  // The benchmarks sample latency percentiles; the gc profiler adds allocation rates.
+  profilers.set(listOf("gc"))
+  fork.set(1)
+  warmupIterations.set(3)
+  iterations.set(5)
+  // A million ad catalog holds its JSON and its parsed columns at the same time.
+  jvmArgs.set(listOf("-Xmx8g"))
+  resultFormat.set("JSON")
+  findProperty("jmhIncludes")?.let { includes.set(listOf(it.toString())) }
+  findProperty("jmhParams")?.let { params ->
+    benchmarkParameters.set(
+        params.toString().split(";").associate {
+          val (name, values) = it.split("=", limit = 2)
+          name to objects.listProperty(String::class.java).value(values.split(","))
+        })
+  }
+}
+
+// Runs the client's load driver against the handler in this process.
+tasks.register<JavaExec>("loadTest") {
+  classpath = sourceSets.getByName("jmh").runtimeClasspath
+  mainClass.set("com.example.odpsamplenetwork.LoadTest")
+  maxHeapSize = "8g"
+}
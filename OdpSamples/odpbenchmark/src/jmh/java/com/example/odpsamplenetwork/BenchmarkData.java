@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.AppInfo;
+import android.adservices.ondevicepersonalization.EventUrlProvider;
+import android.adservices.ondevicepersonalization.FederatedComputeScheduler;
+import android.adservices.ondevicepersonalization.KeyValueStore;
+import android.adservices.ondevicepersonalization.LogReader;
+import android.adservices.ondevicepersonalization.ModelManager;
+import android.adservices.ondevicepersonalization.UserData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds seeded synthetic remote data and user data in the format of the sample's test data,
+ * so every run of a benchmark sees the same catalog.
+ *
+ * <p>Every tenth ad is untargeted, so each request has candidates. The other ads target
+ * keywords, apps or both, and some exclude apps. Terms and apps are drawn with a skew towards
+ * low indexes, like real query and install popularity, so the request keyword and the user's
+ * installed apps (the most popular ones) match a realistic share of the catalog. Filters are
+ * not generated; they need the setfilters library at generation time.
+ */
+final class BenchmarkData {
+    static final String REQUEST_KEYWORD = "keyword0";
+    static final String TEMPLATE_ID = "template1";
+    static final String APP_PACKAGE_NAME = "com.example.odpclient";
+
+    private static final long SEED = 0x0D9L;
+    private static final int KEYWORD_VOCABULARY = 1000;
+    private static final int APP_VOCABULARY = 5000;
+    private static final int LANDING_PAGES = 5000;
+    // Ads share embeddings from a pool, which keeps generating a million ads fast while the
+    // handler still parses a full embedding for each of them.
+    private static final int EMBEDDING_POOL_SIZE = 256;
+    private static final int MNIST_NUM_PIXELS = 784;
+
+    /** Returns remote data with {@code numAds} ads, a template and a model. */
+    static InMemoryKeyValueStore ads(int numAds, int listSize) {
+        Random random = new Random(SEED);
+        String[] embeddings = new String[EMBEDDING_POOL_SIZE];
+        for (int i = 0; i < embeddings.length; i++) {
+            embeddings[i] = embedding(random);
+        }
+        InMemoryKeyValueStore store = new InMemoryKeyValueStore();
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < numAds; i++) {
+            json.setLength(0);
+            json.append("{\"max_cpc\": ")
+                    .append(String.format(Locale.ROOT, "%.2f", 0.1 + random.nextDouble() * 10))
+                    .append(", \"landingPage\": \"https://advertiser")
+                    .append(i % LANDING_PAGES)
+                    .append(".example/\", \"text\": \"Ad ")
+                    .append(i)
+                    .append('"');
+            if (random.nextBoolean()) {
+                json.append(", \"template\": \"").append(TEMPLATE_ID).append('"');
+            }
+            if (i % 10 != 0) {
+                if (random.nextInt(10) < 5) {
+                    appendList(json, "keywords", "keyword", KEYWORD_VOCABULARY, listSize, random);
+                }
+                if (random.nextInt(10) < 3) {
+                    appendList(json, "apps", "com.example.app", APP_VOCABULARY, listSize, random);
+                }
+                if (random.nextInt(10) < 2) {
+                    appendList(
+                            json, "excludes", "com.example.app", APP_VOCABULARY, listSize, random);
+                }
+            }
+            json.append(", \"embedding_features\": \"")
+                    .append(embeddings[random.nextInt(EMBEDDING_POOL_SIZE)])
+                    .append("\"}");
+            store.put("ad" + (i + 1), json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        store.put(
+                TEMPLATE_ID,
+                "<img src=\"{{impressionUrl}}\"><a href=\"{{clickUrl}}\">{{adText}}</a>"
+                        .getBytes(StandardCharsets.UTF_8));
+        store.put("model1", new byte[1024]);
+        return store;
+    }
+
+    /** Returns remote data with {@code numExamples} stored rows for {@code population}. */
+    static InMemoryKeyValueStore examples(String population, int numExamples) {
+        Random random = new Random(SEED);
+        InMemoryKeyValueStore store = new InMemoryKeyValueStore();
+        for (int i = 0; i < numExamples; i++) {
+            String row =
+                    population.contains("criteo") ? criteoRow(random) : mnistRow(random);
+            store.put("example" + (i + 1), row.getBytes(StandardCharsets.UTF_8));
+        }
+        return store;
+    }
+
+    /** Returns user data listing the {@code installedApps} most popular apps as installed. */
+    static UserData userData(int installedApps) {
+        Map<String, AppInfo> appInfos = new HashMap<>();
+        for (int i = 0; i < installedApps; i++) {
+            appInfos.put("com.example.app" + i, new AppInfo(/* installed */ true));
+        }
+        return new UserData(appInfos);
+    }
+
+    static SampleHandler handler(KeyValueStore remoteData, UserData userData) {
+        return new SampleHandler(
+                remoteData,
+                new EventUrlProvider(),
+                userData,
+                new FederatedComputeScheduler(),
+                new LogReader(),
+                new ModelManager());
+    }
+
+    private static void appendList(
+            StringBuilder json,
+            String field,
+            String prefix,
+            int vocabulary,
+            int size,
+            Random random) {
+        json.append(", \"").append(field).append("\": [");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append('"').append(prefix).append(skewed(vocabulary, random)).append('"');
+        }
+        json.append(']');
+    }
+
+    // Index 0 is drawn about sqrt(vocabulary) times as often as under a uniform draw.
+    private static int skewed(int vocabulary, Random random) {
+        double u = random.nextDouble();
+        return (int) (vocabulary * u * u);
+    }
+
+    private static String embedding(Random random) {
+        StringBuilder embedding = new StringBuilder();
+        for (int i = 0; i < AdCatalog.EMBEDDING_SIZE; i++) {
+            if (i > 0) {
+                embedding.append(", ");
+            }
+            embedding.append(String.format(Locale.ROOT, "%.3f", random.nextFloat()));
+        }
+        return embedding.toString();
+    }
+
+    private static String criteoRow(Random random) {
+        StringBuilder row = new StringBuilder().append(random.nextInt(2));
+        for (int i = 0; i < CriteoExampleParser.NUM_INT_FEATURES; i++) {
+            row.append(',');
+            // Like the real data, some integer features are missing.
+            if (random.nextInt(5) != 0) {
+                row.append(random.nextInt(1000));
+            }
+        }
+        for (int i = 0; i < CriteoExampleParser.NUM_CATEGORICAL_FEATURES; i++) {
+            row.append(',').append(String.format("%08x", random.nextInt()));
+        }
+        return row.toString();
+    }
+
+    private static String mnistRow(Random random) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < MNIST_NUM_PIXELS; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            // Most pixels of a digit are blank.
+            row.append(random.nextInt(4) == 0 ? random.nextInt(256) : 0);
+        }
+        return row.append(':').append(random.nextInt(10)).toString();
+    }
+
+    private BenchmarkData() {
+    }
+}
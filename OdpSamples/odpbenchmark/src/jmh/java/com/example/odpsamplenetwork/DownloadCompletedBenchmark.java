@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.DownloadCompletedInput;
+import android.adservices.ondevicepersonalization.DownloadCompletedOutput;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Measures filtering a downloaded catalog against the installed apps in onDownloadCompleted. */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DownloadCompletedBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"0", "20", "200"})
+    public int installedApps;
+
+    @Param({"1", "10"})
+    public int listSize;
+
+    private SampleHandler mHandler;
+    private DownloadCompletedInput mInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryKeyValueStore download = BenchmarkData.ads(catalogSize, listSize);
+        mHandler = BenchmarkData.handler(download, BenchmarkData.userData(installedApps));
+        mInput = new DownloadCompletedInput(download);
+    }
+
+    @Benchmark
+    public DownloadCompletedOutput onDownloadCompleted() {
+        return Outcomes.await(receiver -> mHandler.onDownloadCompleted(mInput, receiver));
+    }
+}
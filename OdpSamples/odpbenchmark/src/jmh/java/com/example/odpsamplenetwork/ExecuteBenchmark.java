@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.ExecuteInput;
+import android.adservices.ondevicepersonalization.ExecuteOutput;
+import android.content.ComponentCallbacks2;
+import android.os.PersistableBundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures onExecute from the call to the delivered output: matching, inference, the auction
+ * and building the result, with the catalog already loaded or loaded by the request.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"0", "20", "200"})
+    public int installedApps;
+
+    @Param({"1", "10"})
+    public int listSize;
+
+    @Param({"1", "3"})
+    public int slots;
+
+    // 0 runs the whole pipeline on every call; a positive TTL measures auction cache hits.
+    @Param({"0"})
+    public long auctionCacheTtlMillis;
+
+    private SampleHandler mHandler;
+    private ExecuteInput mInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mHandler =
+                BenchmarkData.handler(
+                        BenchmarkData.ads(catalogSize, listSize),
+                        BenchmarkData.userData(installedApps));
+        PersistableBundle appParams = new PersistableBundle();
+        appParams.putString("keyword", BenchmarkData.REQUEST_KEYWORD);
+        appParams.putInt("slots", slots);
+        appParams.putLong("auction_cache_ttl_millis", auctionCacheTtlMillis);
+        // No deadline, so that every run measures inference rather than the fallback.
+        appParams.putLong("deadline_millis", 0);
+        mInput = new ExecuteInput(BenchmarkData.APP_PACKAGE_NAME, appParams);
+    }
+
+    /** Drops the loaded catalog before every call, so each request parses the whole catalog. */
+    @State(Scope.Thread)
+    public static class ColdCatalog {
+        @Setup(Level.Invocation)
+        public void dropCatalog() {
+            SampleHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    @Benchmark
+    public ExecuteOutput onExecute() {
+        return Outcomes.await(receiver -> mHandler.onExecute(mInput, receiver));
+    }
+
+    @Benchmark
+    public ExecuteOutput onExecuteColdCatalog(ColdCatalog coldCatalog) {
+        return Outcomes.await(receiver -> mHandler.onExecute(mInput, receiver));
+    }
+}
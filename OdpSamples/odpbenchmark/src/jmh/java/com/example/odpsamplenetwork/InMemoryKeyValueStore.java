@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.KeyValueStore;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** A {@link KeyValueStore} over a map, standing in for the platform's remote data table. */
+final class InMemoryKeyValueStore implements KeyValueStore {
+    private final Map<String, byte[]> mValues = new LinkedHashMap<>();
+
+    void put(String key, byte[] value) {
+        mValues.put(key, value);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return mValues.get(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(mValues.keySet());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.ExecuteInput;
+import android.adservices.ondevicepersonalization.ExecuteOutput;
+import android.adservices.ondevicepersonalization.IsolatedServiceException;
+import android.adservices.ondevicepersonalization.RenderInput;
+import android.adservices.ondevicepersonalization.RenderOutput;
+import android.adservices.ondevicepersonalization.RenderingConfig;
+import android.os.OutcomeReceiver;
+import android.os.PersistableBundle;
+
+import com.example.odpclient.LoadDriver;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the client sample's {@link LoadDriver} against the sample handler in this process, with
+ * a fixed pool of worker threads standing in for the isolated process behind the platform.
+ *
+ * <p>Prints the client side report and the handler's own {@link Metrics} as one JSON line each.
+ *
+ * <pre>
+ *   ./gradlew :odpbenchmark:loadTest --args="--concurrency=16 --requests=2000"
+ * </pre>
+ */
+public final class LoadTest {
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "concurrency", "8",
+            "requests", "1000",
+            "warmup_requests", "200",
+            "worker_threads", "4",
+            "catalog_size", "1000",
+            "list_size", "1",
+            "installed_apps", "20",
+            // Off by default, so that every request runs the whole pipeline.
+            "auction_cache_ttl_millis", "0",
+            // Off by default; with a deadline, requests whose inference runs late skip it.
+            "deadline_millis", "0",
+            "keywords", BenchmarkData.REQUEST_KEYWORD + ",keyword1,keyword2");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0 || !DEFAULTS.containsKey(arg.substring(2, eq))) {
+                System.err.println("Unknown argument: " + arg + ", options: " + DEFAULTS);
+                System.exit(1);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        SampleHandler handler =
+                BenchmarkData.handler(
+                        BenchmarkData.ads(
+                                Integer.parseInt(options.get("catalog_size")),
+                                Integer.parseInt(options.get("list_size"))),
+                        BenchmarkData.userData(Integer.parseInt(options.get("installed_apps"))));
+        ExecutorService workers =
+                Executors.newFixedThreadPool(Integer.parseInt(options.get("worker_threads")));
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        List<String> keywords = Arrays.asList(options.get("keywords").split(","));
+        try {
+            LoadDriver<RenderingConfig> driver =
+                    new LoadDriver<>(
+                            new HandlerClient(
+                                    handler,
+                                    workers,
+                                    Long.parseLong(options.get("auction_cache_ttl_millis")),
+                                    Long.parseLong(options.get("deadline_millis"))));
+            // Loads the catalog and warms up the JIT before anything is measured.
+            driver.run(concurrency, Integer.parseInt(options.get("warmup_requests")), keywords);
+            Metrics.reset();
+            LoadDriver.Report report =
+                    driver.run(concurrency, Integer.parseInt(options.get("requests")), keywords);
+            System.out.println(report.toJson());
+            System.out.println(Metrics.dump());
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /** Calls the handler the way the platform calls SampleService, on a worker thread. */
+    private static final class HandlerClient implements LoadDriver.Client<RenderingConfig> {
+        private final SampleHandler mHandler;
+        private final ExecutorService mWorkers;
+        private final long mAuctionCacheTtlMillis;
+        private final long mDeadlineMillis;
+
+        HandlerClient(
+                SampleHandler handler,
+                ExecutorService workers,
+                long auctionCacheTtlMillis,
+                long deadlineMillis) {
+            mHandler = handler;
+            mWorkers = workers;
+            mAuctionCacheTtlMillis = auctionCacheTtlMillis;
+            mDeadlineMillis = deadlineMillis;
+        }
+
+        @Override
+        public ListenableFuture<RenderingConfig> execute(String keyword) {
+            SettableFuture<RenderingConfig> token = SettableFuture.create();
+            PersistableBundle appParams = new PersistableBundle();
+            appParams.putString("keyword", keyword);
+            appParams.putLong("auction_cache_ttl_millis", mAuctionCacheTtlMillis);
+            appParams.putLong("deadline_millis", mDeadlineMillis);
+            ExecuteInput input = new ExecuteInput(BenchmarkData.APP_PACKAGE_NAME, appParams);
+            mWorkers.execute(
+                    () -> mHandler.onExecute(
+                            input,
+                            new OutcomeReceiver<ExecuteOutput, IsolatedServiceException>() {
+                                @Override
+                                public void onResult(ExecuteOutput output) {
+                                    token.set(output.getRenderingConfig());
+                                }
+
+                                @Override
+                                public void onError(IsolatedServiceException e) {
+                                    token.setException(e);
+                                }
+                            }));
+            return token;
+        }
+
+        @Override
+        public ListenableFuture<?> requestSurfacePackage(RenderingConfig token) {
+            SettableFuture<RenderOutput> rendered = SettableFuture.create();
+            RenderInput input = new RenderInput(/* width */ 320, /* height */ 50, token);
+            mWorkers.execute(
+                    () -> mHandler.onRender(
+                            input,
+                            new OutcomeReceiver<RenderOutput, IsolatedServiceException>() {
+                                @Override
+                                public void onResult(RenderOutput output) {
+                                    rendered.set(output);
+                                }
+
+                                @Override
+                                public void onError(IsolatedServiceException e) {
+                                    rendered.setException(e);
+                                }
+                            }));
+            return rendered;
+        }
+    }
+
+    private LoadTest() {
+    }
+}
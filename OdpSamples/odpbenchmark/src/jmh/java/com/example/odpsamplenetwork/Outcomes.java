@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.IsolatedServiceException;
+import android.os.OutcomeReceiver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/** Turns the handler's callbacks into blocking calls for the benchmarks. */
+final class Outcomes {
+    private static final long TIMEOUT_SECONDS = 60;
+
+    /**
+     * Starts {@code call} with a receiver and waits for its result. An error result fails the
+     * benchmark rather than being measured as a fast response.
+     */
+    static <T> T await(Consumer<OutcomeReceiver<T, IsolatedServiceException>> call) {
+        CompletableFuture<T> outcome = new CompletableFuture<>();
+        call.accept(
+                new OutcomeReceiver<>() {
+                    @Override
+                    public void onResult(T result) {
+                        outcome.complete(result);
+                    }
+
+                    @Override
+                    public void onError(IsolatedServiceException error) {
+                        outcome.completeExceptionally(error);
+                    }
+                });
+        try {
+            return outcome.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Handler call failed", e);
+        }
+    }
+
+    private Outcomes() {
+    }
+}
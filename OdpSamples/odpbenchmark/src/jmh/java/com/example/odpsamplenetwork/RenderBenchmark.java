@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.ExecuteInput;
+import android.adservices.ondevicepersonalization.ExecuteOutput;
+import android.adservices.ondevicepersonalization.RenderInput;
+import android.adservices.ondevicepersonalization.RenderOutput;
+import android.adservices.ondevicepersonalization.RenderingConfig;
+import android.os.PersistableBundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures onRender for the winners of a preceding onExecute, whose render fields are handed
+ * off in memory, and for ads that did not just win and are read from the remote data.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"1", "3"})
+    public int slots;
+
+    private SampleHandler mHandler;
+    private ExecuteInput mExecuteInput;
+    private RenderInput mWinnersInput;
+    private RenderInput mOtherAdsInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mHandler =
+                BenchmarkData.handler(
+                        BenchmarkData.ads(catalogSize, /* listSize */ 1),
+                        BenchmarkData.userData(/* installedApps */ 0));
+        PersistableBundle appParams = new PersistableBundle();
+        appParams.putString("keyword", BenchmarkData.REQUEST_KEYWORD);
+        appParams.putInt("slots", slots);
+        mExecuteInput = new ExecuteInput(BenchmarkData.APP_PACKAGE_NAME, appParams);
+    }
+
+    /** Runs the auction again, so the handed off winners never expire during an iteration. */
+    @Setup(Level.Iteration)
+    public void runAuction() {
+        ExecuteOutput auction =
+                Outcomes.await(receiver -> mHandler.onExecute(mExecuteInput, receiver));
+        RenderingConfig winners = auction.getRenderingConfig();
+        mWinnersInput = new RenderInput(/* width */ 320, /* height */ 50, winners);
+        RenderingConfig.Builder others = new RenderingConfig.Builder();
+        for (int i = 0, ad = catalogSize; i < winners.getKeys().size(); ad--) {
+            if (!winners.getKeys().contains("ad" + ad)) {
+                others.addKey("ad" + ad);
+                i++;
+            }
+        }
+        mOtherAdsInput = new RenderInput(/* width */ 320, /* height */ 50, others.build());
+    }
+
+    @Benchmark
+    public RenderOutput onRenderHandedOff() {
+        return Outcomes.await(receiver -> mHandler.onRender(mWinnersInput, receiver));
+    }
+
+    @Benchmark
+    public RenderOutput onRenderFromRemoteData() {
+        return Outcomes.await(receiver -> mHandler.onRender(mOtherAdsInput, receiver));
+    }
+}
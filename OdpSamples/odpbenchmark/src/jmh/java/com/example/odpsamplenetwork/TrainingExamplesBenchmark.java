@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.TrainingExamplesInput;
+import android.adservices.ondevicepersonalization.TrainingExamplesOutput;
+import android.content.ComponentCallbacks2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures producing one page of training examples per population, with converted examples
+ * served from the example cache or converted from the stored rows.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TrainingExamplesBenchmark {
+    private static final int NUM_EXAMPLES = 1000;
+
+    @Param({"criteo", "mnist", "keras"})
+    public String population;
+
+    private SampleHandler mHandler;
+    private TrainingExamplesInput mInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mHandler =
+                BenchmarkData.handler(
+                        BenchmarkData.examples(population, NUM_EXAMPLES),
+                        BenchmarkData.userData(/* installedApps */ 0));
+        mInput =
+                new TrainingExamplesInput(
+                        population, /* taskName */ "task", /* resumptionToken */ null,
+                        /* collectionName */ "");
+    }
+
+    /** Drops cached examples before every call, so each page converts its stored rows. */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void dropCache() {
+            SampleHandler.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    }
+
+    @Benchmark
+    public TrainingExamplesOutput onTrainingExamples() {
+        return Outcomes.await(receiver -> mHandler.onTrainingExamples(mInput, receiver));
+    }
+
+    @Benchmark
+    public TrainingExamplesOutput onTrainingExamplesColdCache(ColdCache coldCache) {
+        return Outcomes.await(receiver -> mHandler.onTrainingExamples(mInput, receiver));
+    }
+}
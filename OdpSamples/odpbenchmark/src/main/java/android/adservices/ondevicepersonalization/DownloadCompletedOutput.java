@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** JVM stand-in for the platform class. */
+public final class DownloadCompletedOutput {
+    private final List<String> mRetainedKeys;
+
+    private DownloadCompletedOutput(List<String> retainedKeys) {
+        mRetainedKeys = Collections.unmodifiableList(new ArrayList<>(retainedKeys));
+    }
+
+    public List<String> getRetainedKeys() {
+        return mRetainedKeys;
+    }
+
+    public static final class Builder {
+        private final List<String> mRetainedKeys = new ArrayList<>();
+
+        public Builder setRetainedKeys(List<String> retainedKeys) {
+            mRetainedKeys.clear();
+            mRetainedKeys.addAll(retainedKeys);
+            return this;
+        }
+
+        public Builder addRetainedKey(String key) {
+            mRetainedKeys.add(key);
+            return this;
+        }
+
+        public DownloadCompletedOutput build() {
+            return new DownloadCompletedOutput(mRetainedKeys);
+        }
+    }
+}
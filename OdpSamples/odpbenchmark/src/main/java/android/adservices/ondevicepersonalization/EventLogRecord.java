@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.content.ContentValues;
+
+import java.time.Instant;
+
+/** JVM stand-in for the platform class. Records are timestamped when they are built. */
+public final class EventLogRecord {
+    private final int mRowIndex;
+    private final int mType;
+    private final ContentValues mData;
+    private final RequestLogRecord mRequestLogRecord;
+    private final Instant mTime;
+
+    private EventLogRecord(Builder builder) {
+        mRowIndex = builder.mRowIndex;
+        mType = builder.mType;
+        mData = builder.mData;
+        mRequestLogRecord = builder.mRequestLogRecord;
+        mTime = builder.mTime == null ? Instant.now() : builder.mTime;
+    }
+
+    public int getRowIndex() {
+        return mRowIndex;
+    }
+
+    public int getType() {
+        return mType;
+    }
+
+    public ContentValues getData() {
+        return mData;
+    }
+
+    public RequestLogRecord getRequestLogRecord() {
+        return mRequestLogRecord;
+    }
+
+    public Instant getTime() {
+        return mTime;
+    }
+
+    public static final class Builder {
+        private int mRowIndex;
+        private int mType;
+        private ContentValues mData;
+        private RequestLogRecord mRequestLogRecord;
+        private Instant mTime;
+
+        public Builder setRowIndex(int rowIndex) {
+            mRowIndex = rowIndex;
+            return this;
+        }
+
+        public Builder setType(int type) {
+            mType = type;
+            return this;
+        }
+
+        public Builder setData(ContentValues data) {
+            mData = data;
+            return this;
+        }
+
+        public Builder setRequestLogRecord(RequestLogRecord requestLogRecord) {
+            mRequestLogRecord = requestLogRecord;
+            return this;
+        }
+
+        public Builder setTime(Instant time) {
+            mTime = time;
+            return this;
+        }
+
+        public EventLogRecord build() {
+            return new EventLogRecord(this);
+        }
+    }
+}
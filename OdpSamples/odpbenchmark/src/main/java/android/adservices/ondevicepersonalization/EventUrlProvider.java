@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.net.Uri;
+import android.os.PersistableBundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JVM stand-in for the platform class. The platform encrypts the event parameters into an
+ * opaque URL; this writes them out in key order, which costs about as much to build.
+ */
+public class EventUrlProvider {
+    private static final String BASE_URL = "https://localhost/odp/event?";
+
+    public Uri createEventTrackingUrlWithResponse(
+            PersistableBundle eventParams, byte[] responseData, String mimeType) {
+        StringBuilder url = appendParams(new StringBuilder(BASE_URL), eventParams);
+        url.append("&mimeType=").append(mimeType);
+        return Uri.parse(url.toString());
+    }
+
+    public Uri createEventTrackingUrlWithRedirect(
+            PersistableBundle eventParams, Uri destinationUrl) {
+        StringBuilder url = appendParams(new StringBuilder(BASE_URL), eventParams);
+        url.append("&redirect=").append(destinationUrl);
+        return Uri.parse(url.toString());
+    }
+
+    private static StringBuilder appendParams(StringBuilder url, PersistableBundle params) {
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                url.append('&');
+            }
+            url.append(keys.get(i)).append('=').append(params.get(keys.get(i)));
+        }
+        return url;
+    }
+}
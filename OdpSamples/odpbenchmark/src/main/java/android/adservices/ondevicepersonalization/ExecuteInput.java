@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.os.PersistableBundle;
+
+/** JVM stand-in for the platform class, constructed directly by benchmarks. */
+public final class ExecuteInput {
+    private final String mAppPackageName;
+    private final PersistableBundle mAppParams;
+
+    public ExecuteInput(String appPackageName, PersistableBundle appParams) {
+        mAppPackageName = appPackageName;
+        mAppParams = appParams;
+    }
+
+    public String getAppPackageName() {
+        return mAppPackageName;
+    }
+
+    public PersistableBundle getAppParams() {
+        return mAppParams;
+    }
+}
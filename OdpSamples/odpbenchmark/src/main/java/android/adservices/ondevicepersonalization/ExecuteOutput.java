@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** JVM stand-in for the platform class. */
+public final class ExecuteOutput {
+    private final RequestLogRecord mRequestLogRecord;
+    private final RenderingConfig mRenderingConfig;
+    private final List<EventLogRecord> mEventLogRecords;
+    private final byte[] mOutputData;
+
+    private ExecuteOutput(Builder builder) {
+        mRequestLogRecord = builder.mRequestLogRecord;
+        mRenderingConfig = builder.mRenderingConfig;
+        mEventLogRecords = Collections.unmodifiableList(new ArrayList<>(builder.mEventLogRecords));
+        mOutputData = builder.mOutputData;
+    }
+
+    public RequestLogRecord getRequestLogRecord() {
+        return mRequestLogRecord;
+    }
+
+    public RenderingConfig getRenderingConfig() {
+        return mRenderingConfig;
+    }
+
+    public List<EventLogRecord> getEventLogRecords() {
+        return mEventLogRecords;
+    }
+
+    public byte[] getOutputData() {
+        return mOutputData;
+    }
+
+    public static final class Builder {
+        private RequestLogRecord mRequestLogRecord;
+        private RenderingConfig mRenderingConfig;
+        private final List<EventLogRecord> mEventLogRecords = new ArrayList<>();
+        private byte[] mOutputData;
+
+        public Builder setRequestLogRecord(RequestLogRecord requestLogRecord) {
+            mRequestLogRecord = requestLogRecord;
+            return this;
+        }
+
+        public Builder setRenderingConfig(RenderingConfig renderingConfig) {
+            mRenderingConfig = renderingConfig;
+            return this;
+        }
+
+        public Builder addEventLogRecord(EventLogRecord eventLogRecord) {
+            mEventLogRecords.add(eventLogRecord);
+            return this;
+        }
+
+        public Builder setOutputData(byte[] outputData) {
+            mOutputData = outputData;
+            return this;
+        }
+
+        public ExecuteOutput build() {
+            return new ExecuteOutput(this);
+        }
+    }
+}
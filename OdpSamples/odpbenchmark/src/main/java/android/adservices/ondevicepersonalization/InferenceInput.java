@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+/** JVM stand-in for the platform class. */
+public final class InferenceInput {
+    private final Params mParams;
+    private final Object[] mInputData;
+    private final int mBatchSize;
+    private final InferenceOutput mExpectedOutputStructure;
+
+    private InferenceInput(Builder builder) {
+        mParams = builder.mParams;
+        mInputData = builder.mInputData;
+        mBatchSize = builder.mBatchSize;
+        mExpectedOutputStructure = builder.mExpectedOutputStructure;
+    }
+
+    public Params getParams() {
+        return mParams;
+    }
+
+    public Object[] getInputData() {
+        return mInputData;
+    }
+
+    public int getBatchSize() {
+        return mBatchSize;
+    }
+
+    public InferenceOutput getExpectedOutputStructure() {
+        return mExpectedOutputStructure;
+    }
+
+    public static class Params {
+        private final KeyValueStore mKeyValueStore;
+        private final String mModelKey;
+
+        private Params(KeyValueStore keyValueStore, String modelKey) {
+            mKeyValueStore = keyValueStore;
+            mModelKey = modelKey;
+        }
+
+        public KeyValueStore getKeyValueStore() {
+            return mKeyValueStore;
+        }
+
+        public String getModelKey() {
+            return mModelKey;
+        }
+
+        public static final class Builder {
+            private final KeyValueStore mKeyValueStore;
+            private final String mModelKey;
+
+            public Builder(KeyValueStore keyValueStore, String modelKey) {
+                mKeyValueStore = keyValueStore;
+                mModelKey = modelKey;
+            }
+
+            public Params build() {
+                return new Params(mKeyValueStore, mModelKey);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Params mParams;
+        private final Object[] mInputData;
+        private final InferenceOutput mExpectedOutputStructure;
+        private int mBatchSize = 1;
+
+        public Builder(Params params, Object[] inputData, InferenceOutput expectedOutputStructure) {
+            mParams = params;
+            mInputData = inputData;
+            mExpectedOutputStructure = expectedOutputStructure;
+        }
+
+        public Builder setBatchSize(int batchSize) {
+            mBatchSize = batchSize;
+            return this;
+        }
+
+        public InferenceInput build() {
+            return new InferenceInput(this);
+        }
+    }
+}
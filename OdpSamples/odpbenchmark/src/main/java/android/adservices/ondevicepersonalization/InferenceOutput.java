@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** JVM stand-in for the platform class. */
+public final class InferenceOutput {
+    private final Map<Integer, Object> mDataOutputs;
+
+    private InferenceOutput(Map<Integer, Object> dataOutputs) {
+        mDataOutputs = dataOutputs;
+    }
+
+    public Map<Integer, Object> getDataOutputs() {
+        return mDataOutputs;
+    }
+
+    public static final class Builder {
+        private Map<Integer, Object> mDataOutputs = Collections.emptyMap();
+
+        public Builder setDataOutputs(Map<Integer, Object> dataOutputs) {
+            mDataOutputs = dataOutputs;
+            return this;
+        }
+
+        public Builder addDataOutput(int key, Object value) {
+            if (mDataOutputs.isEmpty()) {
+                mDataOutputs = new HashMap<>();
+            }
+            mDataOutputs.put(key, value);
+            return this;
+        }
+
+        public InferenceOutput build() {
+            return new InferenceOutput(mDataOutputs);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.os.OutcomeReceiver;
+
+/** JVM stand-in for the platform interface. Unimplemented calls return empty outputs. */
+public interface IsolatedWorker {
+    default void onExecute(
+            ExecuteInput input, OutcomeReceiver<ExecuteOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new ExecuteOutput.Builder().build());
+    }
+
+    default void onDownloadCompleted(
+            DownloadCompletedInput input,
+            OutcomeReceiver<DownloadCompletedOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new DownloadCompletedOutput.Builder().build());
+    }
+
+    default void onRender(
+            RenderInput input, OutcomeReceiver<RenderOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new RenderOutput.Builder().build());
+    }
+
+    default void onEvent(
+            EventInput input, OutcomeReceiver<EventOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new EventOutput.Builder().build());
+    }
+
+    default void onTrainingExamples(
+            TrainingExamplesInput input,
+            OutcomeReceiver<TrainingExamplesOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new TrainingExamplesOutput.Builder().build());
+    }
+
+    default void onWebTrigger(
+            WebTriggerInput input,
+            OutcomeReceiver<WebTriggerOutput, IsolatedServiceException> receiver) {
+        receiver.onResult(new WebTriggerOutput.Builder().build());
+    }
+}
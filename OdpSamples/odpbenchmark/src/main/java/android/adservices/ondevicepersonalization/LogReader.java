@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in for the platform class over fixed in-memory logs. Queries return the records
+ * whose time falls in [start, end), like the platform's.
+ */
+public class LogReader {
+    private final List<RequestLogRecord> mRequests;
+    private final List<EventLogRecord> mJoinedEvents;
+
+    public LogReader() {
+        this(new ArrayList<>(), new ArrayList<>());
+    }
+
+    public LogReader(List<RequestLogRecord> requests, List<EventLogRecord> joinedEvents) {
+        mRequests = requests;
+        mJoinedEvents = joinedEvents;
+    }
+
+    public List<RequestLogRecord> getRequests(Instant startTime, Instant endTime) {
+        List<RequestLogRecord> result = new ArrayList<>();
+        for (RequestLogRecord request : mRequests) {
+            if (inRange(request.getTime(), startTime, endTime)) {
+                result.add(request);
+            }
+        }
+        return result;
+    }
+
+    public List<EventLogRecord> getJoinedEvents(Instant startTime, Instant endTime) {
+        List<EventLogRecord> result = new ArrayList<>();
+        for (EventLogRecord event : mJoinedEvents) {
+            if (inRange(event.getTime(), startTime, endTime)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private static boolean inRange(Instant time, Instant startTime, Instant endTime) {
+        return !time.isBefore(startTime) && time.isBefore(endTime);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.os.PersistableBundle;
+
+/** JVM stand-in for the platform class. */
+public final class RenderOutput {
+    private final String mContent;
+    private final String mTemplateId;
+    private final PersistableBundle mTemplateParams;
+
+    private RenderOutput(Builder builder) {
+        mContent = builder.mContent;
+        mTemplateId = builder.mTemplateId;
+        mTemplateParams = builder.mTemplateParams;
+    }
+
+    public String getContent() {
+        return mContent;
+    }
+
+    public String getTemplateId() {
+        return mTemplateId;
+    }
+
+    public PersistableBundle getTemplateParams() {
+        return mTemplateParams;
+    }
+
+    public static final class Builder {
+        private String mContent;
+        private String mTemplateId;
+        private PersistableBundle mTemplateParams;
+
+        public Builder setContent(String content) {
+            mContent = content;
+            return this;
+        }
+
+        public Builder setTemplateId(String templateId) {
+            mTemplateId = templateId;
+            return this;
+        }
+
+        public Builder setTemplateParams(PersistableBundle templateParams) {
+            mTemplateParams = templateParams;
+            return this;
+        }
+
+        public RenderOutput build() {
+            return new RenderOutput(this);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.content.ContentValues;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** JVM stand-in for the platform class. Records are timestamped when they are built. */
+public final class RequestLogRecord {
+    private final List<ContentValues> mRows;
+    private final long mRequestId;
+    private final Instant mTime;
+
+    private RequestLogRecord(Builder builder) {
+        mRows = Collections.unmodifiableList(new ArrayList<>(builder.mRows));
+        mRequestId = builder.mRequestId;
+        mTime = builder.mTime == null ? Instant.now() : builder.mTime;
+    }
+
+    public List<ContentValues> getRows() {
+        return mRows;
+    }
+
+    public long getRequestId() {
+        return mRequestId;
+    }
+
+    public Instant getTime() {
+        return mTime;
+    }
+
+    public static final class Builder {
+        private final List<ContentValues> mRows = new ArrayList<>();
+        private long mRequestId;
+        private Instant mTime;
+
+        public Builder addRow(ContentValues row) {
+            mRows.add(row);
+            return this;
+        }
+
+        public Builder setRows(List<ContentValues> rows) {
+            mRows.clear();
+            mRows.addAll(rows);
+            return this;
+        }
+
+        public Builder setRequestId(long requestId) {
+            mRequestId = requestId;
+            return this;
+        }
+
+        public Builder setTime(Instant time) {
+            mTime = time;
+            return this;
+        }
+
+        public RequestLogRecord build() {
+            return new RequestLogRecord(this);
+        }
+    }
+}
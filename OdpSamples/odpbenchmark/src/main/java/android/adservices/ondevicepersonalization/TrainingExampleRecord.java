@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+/** JVM stand-in for the platform class. */
+public final class TrainingExampleRecord {
+    private final byte[] mTrainingExample;
+    private final byte[] mResumptionToken;
+
+    private TrainingExampleRecord(byte[] trainingExample, byte[] resumptionToken) {
+        mTrainingExample = trainingExample;
+        mResumptionToken = resumptionToken;
+    }
+
+    public byte[] getTrainingExample() {
+        return mTrainingExample;
+    }
+
+    public byte[] getResumptionToken() {
+        return mResumptionToken;
+    }
+
+    public static final class Builder {
+        private byte[] mTrainingExample;
+        private byte[] mResumptionToken;
+
+        public Builder setTrainingExample(byte[] trainingExample) {
+            mTrainingExample = trainingExample;
+            return this;
+        }
+
+        public Builder setResumptionToken(byte[] resumptionToken) {
+            mResumptionToken = resumptionToken;
+            return this;
+        }
+
+        public TrainingExampleRecord build() {
+            return new TrainingExampleRecord(mTrainingExample, mResumptionToken);
+        }
+    }
+}
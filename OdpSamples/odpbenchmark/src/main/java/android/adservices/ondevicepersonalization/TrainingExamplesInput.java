@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+/** JVM stand-in for the platform class, constructed directly by benchmarks. */
+public final class TrainingExamplesInput {
+    private final String mPopulationName;
+    private final String mTaskName;
+    private final byte[] mResumptionToken;
+    private final String mCollectionName;
+
+    public TrainingExamplesInput(
+            String populationName,
+            String taskName,
+            byte[] resumptionToken,
+            String collectionName) {
+        mPopulationName = populationName;
+        mTaskName = taskName;
+        mResumptionToken = resumptionToken;
+        mCollectionName = collectionName;
+    }
+
+    public String getPopulationName() {
+        return mPopulationName;
+    }
+
+    public String getTaskName() {
+        return mTaskName;
+    }
+
+    public byte[] getResumptionToken() {
+        return mResumptionToken;
+    }
+
+    public String getCollectionName() {
+        return mCollectionName;
+    }
+}
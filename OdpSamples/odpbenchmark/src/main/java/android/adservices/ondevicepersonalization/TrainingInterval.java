@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.time.Duration;
+
+/** JVM stand-in for the platform class. */
+public final class TrainingInterval {
+    public static final int SCHEDULING_MODE_ONE_TIME = 1;
+    public static final int SCHEDULING_MODE_RECURRENT = 2;
+
+    private final int mSchedulingMode;
+    private final Duration mMinimumInterval;
+
+    private TrainingInterval(int schedulingMode, Duration minimumInterval) {
+        mSchedulingMode = schedulingMode;
+        mMinimumInterval = minimumInterval;
+    }
+
+    public int getSchedulingMode() {
+        return mSchedulingMode;
+    }
+
+    public Duration getMinimumInterval() {
+        return mMinimumInterval;
+    }
+
+    public static final class Builder {
+        private int mSchedulingMode;
+        private Duration mMinimumInterval = Duration.ZERO;
+
+        public Builder setSchedulingMode(int schedulingMode) {
+            mSchedulingMode = schedulingMode;
+            return this;
+        }
+
+        public Builder setMinimumInterval(Duration minimumInterval) {
+            mMinimumInterval = minimumInterval;
+            return this;
+        }
+
+        public TrainingInterval build() {
+            return new TrainingInterval(mSchedulingMode, mMinimumInterval);
+        }
+    }
+}
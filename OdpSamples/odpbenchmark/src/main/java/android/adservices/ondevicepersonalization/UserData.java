@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * JVM stand-in for the platform class. Only the app list is modelled, as it is the only user
+ * data the sample network reads.
+ */
+public final class UserData {
+    private final Map<String, AppInfo> mAppInfos;
+
+    public UserData(Map<String, AppInfo> appInfos) {
+        mAppInfos = Collections.unmodifiableMap(appInfos);
+    }
+
+    public Map<String, AppInfo> getAppInfos() {
+        return mAppInfos;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.adservices.ondevicepersonalization;
+
+import android.net.Uri;
+
+/** JVM stand-in for the platform class, constructed directly by benchmarks. */
+public final class WebTriggerInput {
+    private final Uri mDestinationUrl;
+    private final String mAppPackageName;
+    private final byte[] mData;
+
+    public WebTriggerInput(Uri destinationUrl, String appPackageName, byte[] data) {
+        mDestinationUrl = destinationUrl;
+        mAppPackageName = appPackageName;
+        mData = data;
+    }
+
+    public Uri getDestinationUrl() {
+        return mDestinationUrl;
+    }
+
+    public String getAppPackageName() {
+        return mAppPackageName;
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+}
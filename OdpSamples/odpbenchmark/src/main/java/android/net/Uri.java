@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.net;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/** JVM stand-in for the framework Uri, holding the string it was parsed from. */
+public final class Uri {
+    private final String mUriString;
+
+    private Uri(String uriString) {
+        mUriString = uriString;
+    }
+
+    public static Uri parse(String uriString) {
+        if (uriString == null) {
+            throw new NullPointerException("uriString");
+        }
+        return new Uri(uriString);
+    }
+
+    public String getScheme() {
+        URI uri = toUri();
+        return uri == null ? null : uri.getScheme();
+    }
+
+    public String getHost() {
+        URI uri = toUri();
+        return uri == null ? null : uri.getHost();
+    }
+
+    public int getPort() {
+        URI uri = toUri();
+        return uri == null ? -1 : uri.getPort();
+    }
+
+    public String getPath() {
+        URI uri = toUri();
+        return uri == null ? null : uri.getPath();
+    }
+
+    public String getQuery() {
+        URI uri = toUri();
+        return uri == null ? null : uri.getQuery();
+    }
+
+    public String getFragment() {
+        URI uri = toUri();
+        return uri == null ? null : uri.getFragment();
+    }
+
+    // Like the framework, a malformed string still makes a Uri; only its parts are missing.
+    private URI toUri() {
+        try {
+            return new URI(mUriString);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Uri && mUriString.equals(((Uri) o).mUriString);
+    }
+
+    @Override
+    public int hashCode() {
+        return mUriString.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mUriString;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** JVM stand-in for the framework bundle, backed by a map. */
+public final class PersistableBundle {
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    public PersistableBundle() {}
+
+    public PersistableBundle(PersistableBundle other) {
+        mValues.putAll(other.mValues);
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public boolean isEmpty() {
+        return mValues.isEmpty();
+    }
+
+    public boolean containsKey(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public Set<String> keySet() {
+        return mValues.keySet();
+    }
+
+    public Object get(String key) {
+        return mValues.get(key);
+    }
+
+    public void remove(String key) {
+        mValues.remove(key);
+    }
+
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+
+    public void putStringArray(String key, String[] value) {
+        mValues.put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        mValues.put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        mValues.put(key, value);
+    }
+
+    public void putDouble(String key, double value) {
+        mValues.put(key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        mValues.put(key, value);
+    }
+
+    public String getString(String key) {
+        return get(key, String.class, null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = getString(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public String[] getStringArray(String key) {
+        return get(key, String[].class, null);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return get(key, Integer.class, defaultValue);
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        return get(key, Long.class, defaultValue);
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, 0.0);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        return get(key, Double.class, defaultValue);
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return get(key, Boolean.class, defaultValue);
+    }
+
+    // Like the framework, a value of another type reads as the default.
+    private <T> T get(String key, Class<T> type, T defaultValue) {
+        Object value = mValues.get(key);
+        return type.isInstance(value) ? type.cast(value) : defaultValue;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistableBundle" + mValues;
+    }
+}
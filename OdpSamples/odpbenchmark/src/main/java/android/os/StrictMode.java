@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/** JVM stand-in for the framework StrictMode. Policies are accepted and never enforced. */
+public final class StrictMode {
+    public static void setThreadPolicy(ThreadPolicy policy) {}
+
+    private StrictMode() {}
+
+    public static final class ThreadPolicy {
+        private ThreadPolicy() {}
+
+        public static final class Builder {
+            public Builder() {}
+
+            public Builder(ThreadPolicy policy) {}
+
+            public Builder detectAll() {
+                return this;
+            }
+
+            public Builder detectNetwork() {
+                return this;
+            }
+
+            public Builder detectResourceMismatches() {
+                return this;
+            }
+
+            public Builder detectUnbufferedIo() {
+                return this;
+            }
+
+            public Builder penaltyLog() {
+                return this;
+            }
+
+            public ThreadPolicy build() {
+                return new ThreadPolicy();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+/** JVM stand-in for the framework Base64 codec, for the flags the sample uses. */
+public class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int URL_SAFE = 8;
+
+    public static byte[] decode(String str, int flags) {
+        return decode(str.getBytes(java.nio.charset.StandardCharsets.US_ASCII), flags);
+    }
+
+    public static byte[] decode(byte[] input, int flags) {
+        // The MIME decoder skips line breaks, as the framework decoder does.
+        if ((flags & URL_SAFE) != 0) {
+            return java.util.Base64.getUrlDecoder().decode(stripLineBreaks(input));
+        }
+        return java.util.Base64.getMimeDecoder().decode(input);
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        java.util.Base64.Encoder encoder =
+                (flags & URL_SAFE) != 0
+                        ? java.util.Base64.getUrlEncoder()
+                        : java.util.Base64.getEncoder();
+        if ((flags & NO_PADDING) != 0) {
+            encoder = encoder.withoutPadding();
+        }
+        String encoded = encoder.encodeToString(input);
+        if ((flags & NO_WRAP) != 0) {
+            return encoded;
+        }
+        StringBuilder wrapped = new StringBuilder(encoded.length() + encoded.length() / 76 + 1);
+        for (int start = 0; start < encoded.length(); start += 76) {
+            wrapped.append(encoded, start, Math.min(encoded.length(), start + 76)).append('\n');
+        }
+        return wrapped.toString();
+    }
+
+    private static byte[] stripLineBreaks(byte[] input) {
+        int count = 0;
+        byte[] output = new byte[input.length];
+        for (byte b : input) {
+            if (b != '\n' && b != '\r') {
+                output[count++] = b;
+            }
+        }
+        return java.util.Arrays.copyOf(output, count);
+    }
+
+    private Base64() {}
+}
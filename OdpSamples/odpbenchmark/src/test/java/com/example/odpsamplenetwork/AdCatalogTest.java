@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpsamplenetwork;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+@RunWith(JUnit4.class)
+public final class AdCatalogTest {
+    @Test
+    public void matchedAdsNeedExactlyEmbeddingSizeValues() {
+        AdCatalog.Builder builder = new AdCatalog.Builder(new ArrayList<>());
+
+        assertFalse(builder.add("missing", ad(null)));
+        assertFalse(builder.add("short", ad(embedding(AdCatalog.EMBEDDING_SIZE - 1))));
+        assertFalse(builder.add("long", ad(embedding(AdCatalog.EMBEDDING_SIZE + 1))));
+        assertTrue(builder.add("exact", ad(embedding(AdCatalog.EMBEDDING_SIZE))));
+
+        AdCatalog catalog = builder.build(1, 0);
+        assertEquals(1, catalog.mSize);
+        assertEquals("exact", catalog.mIds[0]);
+        float[] values = new float[AdCatalog.EMBEDDING_SIZE];
+        catalog.copyEmbedding(0, values);
+        assertEquals(AdCatalog.EMBEDDING_SIZE - 1, values[AdCatalog.EMBEDDING_SIZE - 1], 0f);
+    }
+
+    @Test
+    public void renderedAdsDoNotNeedEmbedding() {
+        AdCatalog.Builder builder = new AdCatalog.Builder();
+
+        assertTrue(builder.add("missing", ad(null)));
+        assertTrue(builder.add("long", ad(embedding(AdCatalog.EMBEDDING_SIZE + 1))));
+
+        AdCatalog catalog = builder.build(1, 0);
+        assertArrayEquals(new String[] {"missing", "long"}, catalog.mIds);
+        assertEquals("https://example.com", catalog.mLandingPages[0]);
+        assertEquals("Buy", catalog.mTexts[0]);
+    }
+
+    private static String embedding(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(i);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] ad(String embedding) {
+        String json = "{\"max_cpc\":1.5,\"landingPage\":\"https://example.com\",\"text\":\"Buy\""
+                + (embedding == null ? "" : ",\"embedding_features\":\"" + embedding + "\"")
+                + "}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
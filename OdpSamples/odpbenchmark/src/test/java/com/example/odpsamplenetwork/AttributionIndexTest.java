@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.adservices.ondevicepersonalization.EventLogRecord;
+import android.adservices.ondevicepersonalization.LogReader;
+import android.adservices.ondevicepersonalization.RequestLogRecord;
+import android.content.ContentValues;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public final class AttributionIndexTest {
+    private static final long WINDOW_MILLIS = 10_000;
+    private static final String AD_ID_KEY = "adid";
+
+    private final List<EventLogRecord> mEvents = new ArrayList<>();
+    private final LogReader mLogReader = new LogReader(new ArrayList<>(), mEvents);
+    private AttributionIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new AttributionIndex(new JoinedEventCursor(WINDOW_MILLIS), AD_ID_KEY);
+    }
+
+    @Test
+    public void findsLatestEventPerKey() {
+        EventLogRecord older = event("ad1", 1_000);
+        EventLogRecord newer = event("ad1", 2_000);
+        mEvents.add(newer);
+        mEvents.add(older);
+
+        assertSame(newer, mIndex.find(mLogReader, "ad1", 3_000));
+        assertNull(mIndex.find(mLogReader, "ad2", 3_000));
+    }
+
+    @Test
+    public void expiresEventsFoldedInOutOfOrder() {
+        EventLogRecord newer = event("ad2", 5_000);
+        mEvents.add(newer);
+        mIndex.find(mLogReader, "ad2", 6_000);
+        // Written late, and only picked up by the overlap of the next sync. It is indexed after
+        // an event that is newer than it.
+        mEvents.add(event("ad1", 2_000));
+        mIndex.find(mLogReader, "ad1", 7_000);
+        assertEquals(2, mIndex.size());
+
+        // The window now starts at 3000: ad1 has left it, ad2 has not.
+        assertSame(newer, mIndex.find(mLogReader, "ad2", 13_000));
+        assertEquals(1, mIndex.size());
+
+        assertNull(mIndex.find(mLogReader, "ad2", 16_000));
+        assertEquals(0, mIndex.size());
+    }
+
+    @Test
+    public void replacesExpiryOfUpdatedKey() {
+        mEvents.add(event("ad1", 1_000));
+        mIndex.find(mLogReader, "ad1", 1_500);
+        EventLogRecord newer = event("ad1", 8_000);
+        mEvents.add(newer);
+
+        // The first event has left the window, but the key stays for its newer event.
+        assertSame(newer, mIndex.find(mLogReader, "ad1", 12_000));
+        assertEquals(1, mIndex.size());
+        assertNull(mIndex.find(mLogReader, "ad1", 19_000));
+        assertEquals(0, mIndex.size());
+    }
+
+    private static EventLogRecord event(String adId, long timeMillis) {
+        ContentValues row = new ContentValues();
+        row.put(AD_ID_KEY, adId);
+        return new EventLogRecord.Builder()
+                .setRequestLogRecord(new RequestLogRecord.Builder().addRow(row).build())
+                .setTime(Instant.ofEpochMilli(timeMillis))
+                .build();
+    }
+}
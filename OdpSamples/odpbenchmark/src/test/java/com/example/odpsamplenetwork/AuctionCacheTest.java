@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpsamplenetwork;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.HashCode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.StandardCharsets;
+
+@RunWith(JUnit4.class)
+public final class AuctionCacheTest {
+    private static final long TTL_MILLIS = 1_000;
+
+    private AdCatalog mCatalog;
+
+    @Before
+    public void setUp() {
+        AdCatalog.Builder builder = new AdCatalog.Builder();
+        for (String id : new String[] {"ad0", "ad1", "ad2"}) {
+            assertTrue(builder.add(id, "{}".getBytes(StandardCharsets.UTF_8)));
+        }
+        mCatalog = builder.build(1, 0);
+    }
+
+    @Test
+    public void expiresAfterTimeToLive() {
+        AuctionCache cache = new AuctionCache(4);
+        SampleHandler.AuctionResult result = result(0, 1);
+        cache.put(key("a"), 2, result, TTL_MILLIS, 0);
+
+        assertSame(result, cache.get(key("a"), 2, TTL_MILLIS - 1));
+        assertNull(cache.get(key("a"), 2, TTL_MILLIS));
+        // An expired entry is dropped, not revived by an earlier clock.
+        assertNull(cache.get(key("a"), 2, 0));
+    }
+
+    @Test
+    public void servesRequestsForAtMostTheCachedSlots() {
+        AuctionCache cache = new AuctionCache(4);
+        cache.put(key("a"), 2, result(2, 0), TTL_MILLIS, 0);
+
+        SampleHandler.AuctionResult first = cache.get(key("a"), 1, 0);
+        assertNotNull(first);
+        assertArrayEquals(new int[] {2}, first.mWinners);
+        assertArrayEquals(new int[] {2, 0}, cache.get(key("a"), 2, 0).mWinners);
+        assertNull(cache.get(key("a"), 3, 0));
+        assertNull(cache.get(key("b"), 1, 0));
+    }
+
+    @Test
+    public void evictsOldestFirst() {
+        AuctionCache cache = new AuctionCache(2);
+        cache.put(key("a"), 1, result(0), TTL_MILLIS, 0);
+        cache.put(key("b"), 1, result(1), TTL_MILLIS, 0);
+        // Storing a again makes b the oldest entry.
+        cache.put(key("a"), 1, result(0), TTL_MILLIS, 0);
+        cache.put(key("c"), 1, result(2), TTL_MILLIS, 0);
+
+        assertNull(cache.get(key("b"), 1, 0));
+        assertNotNull(cache.get(key("a"), 1, 0));
+        assertNotNull(cache.get(key("c"), 1, 0));
+    }
+
+    @Test
+    public void invalidatesResultsWonByAd() {
+        AuctionCache cache = new AuctionCache(4);
+        cache.put(key("a"), 2, result(0, 1), TTL_MILLIS, 0);
+        cache.put(key("b"), 1, result(2), TTL_MILLIS, 0);
+
+        cache.invalidateAd("ad1");
+
+        assertNull(cache.get(key("a"), 1, 0));
+        assertNotNull(cache.get(key("b"), 1, 0));
+    }
+
+    private SampleHandler.AuctionResult result(int... winners) {
+        return new SampleHandler.AuctionResult(
+                mCatalog, winners, new double[winners.length], /* degraded */ false);
+    }
+
+    private static ExecuteKey key(String term) {
+        return new ExecuteKey(new String[] {term}, false, HashCode.fromLong(0L), 1);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.tensorflow.example.BytesList;
+import org.tensorflow.example.Example;
+import org.tensorflow.example.Feature;
+import org.tensorflow.example.Features;
+import org.tensorflow.example.Int64List;
+
+@RunWith(JUnit4.class)
+public final class CriteoExampleParserTest {
+    // Rows of res/raw/test_data1.json. The last has empty integers and missing categoricals.
+    private static final String EXAMPLE1 =
+            "0,1,1,5,0,1382,4,15,2,181,1,2,,2,68fd1e64,80e26c9b,fb936136,7b4723c4,25c83c98,"
+                    + "7e0ccccf,de7995b8,1f89b562,a73ee510,a8cd5504,b2cb9c98,37c9c164,2824a5f6,"
+                    + "1adce6ef,8ba8b39a,891b62e7,e5ba7672,f54016b9,21ddcdc9,b1252a9d,07b5194c,,"
+                    + "3a171ecb,c5c50484,e8b83407,9727dd16,";
+    private static final String EXAMPLE2 =
+            "0,2,0,44,1,102,8,2,2,4,1,1,,4,68fd1e64,f0cf0024,6f67f7e5,41274cd7,25c83c98,"
+                    + "fe6b92e5,922afcc0,0b153874,a73ee510,2b53e5fb,4f1b46f3,623049e6,d7020589,"
+                    + "b28479f6,e6c5b5cd,c92f3b61,07c540c4,b04e4670,21ddcdc9,5840adea,60f6221e,,"
+                    + "3a171ecb,43f13e8b,e8b83407,731c3655,";
+    private static final String EXAMPLE37 =
+            "0,,1,,,23255,,0,1,73,,0,,,7e5c2ff4,d833535f,b00d1501,d16679b9,25c83c98,7e0ccccf,"
+                    + "65c53f25,1f89b562,a73ee510,3b08e48b,ad2bc6f4,e0d76380,39ccb769,b28479f6,"
+                    + "a733d362,1203a270,776ce399,281769c2,,,73d06dde,,32c7478e,aee52b6f,,,";
+
+    @Test
+    public void matchesPreviousParserOnDownloadedRows() throws Exception {
+        assertParsesLikePreviousParser(EXAMPLE1);
+        assertParsesLikePreviousParser(EXAMPLE2);
+        assertParsesLikePreviousParser(EXAMPLE37);
+    }
+
+    @Test
+    public void parsesEmptyIntegerColumnsAsZero() throws Exception {
+        String row = EXAMPLE37;
+        assertParsesLikePreviousParser(row);
+        Feature intFeature1 =
+                Example.parseFrom(CriteoExampleParser.serialize(row.getBytes(UTF_8)))
+                        .getFeatures()
+                        .getFeatureOrThrow("int-feature-1");
+        assertEquals(Int64List.newBuilder().addValue(0L).build(), intFeature1.getInt64List());
+    }
+
+    @Test
+    public void keepsMissingCategoricalsAsEmptyValues() throws Exception {
+        String row = withColumn(EXAMPLE1, 39, "");
+        assertParsesLikePreviousParser(row);
+        Feature feature =
+                Example.parseFrom(CriteoExampleParser.serialize(row.getBytes(UTF_8)))
+                        .getFeatures()
+                        .getFeatureOrThrow("categorical-feature-39");
+        assertEquals(
+                BytesList.newBuilder().addValue(ByteString.EMPTY).build(), feature.getBytesList());
+    }
+
+    @Test
+    public void copiesCategoricalValuesVerbatim() throws Exception {
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 14, "DEADBEEF"));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 14, "0x7f"));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 14, "caf\u00e9 \u65e5\u672c"));
+    }
+
+    @Test
+    public void parsesSignedAndExtremeIntegers() throws Exception {
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 1, "-1"));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 2, "+7"));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 3, "007"));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 4, String.valueOf(Long.MAX_VALUE)));
+        assertParsesLikePreviousParser(withColumn(EXAMPLE1, 5, String.valueOf(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void ignoresColumnsPastTheSchema() throws Exception {
+        assertParsesLikePreviousParser(EXAMPLE1 + "extra,columns");
+    }
+
+    @Test
+    public void rejectsMalformedIntegersLikePreviousParser() {
+        for (String value :
+                new String[] {"x", "-", "+", "1.5", " 5", "0x10", "9223372036854775808"}) {
+            String row = withColumn(EXAMPLE1, 6, value);
+            assertThrows(NumberFormatException.class, () -> previousParse(row));
+            assertThrows(
+                    NumberFormatException.class,
+                    () -> CriteoExampleParser.serialize(row.getBytes(UTF_8)));
+        }
+    }
+
+    @Test
+    public void rejectsRowsWithMissingColumns() {
+        String row = EXAMPLE1.substring(0, EXAMPLE1.indexOf(",68fd1e64"));
+        assertThrows(RuntimeException.class, () -> previousParse(row));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> CriteoExampleParser.serialize(row.getBytes(UTF_8)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> CriteoExampleParser.serialize(new byte[0]));
+    }
+
+    private static void assertParsesLikePreviousParser(String row)
+            throws InvalidProtocolBufferException {
+        assertEquals(
+                previousParse(row),
+                Example.parseFrom(CriteoExampleParser.serialize(row.getBytes(UTF_8))));
+    }
+
+    /** Returns {@code row} with CSV column {@code index} replaced by {@code value}. */
+    private static String withColumn(String row, int index, String value) {
+        String[] columns = row.split(",", -1);
+        columns[index] = value;
+        return String.join(",", columns);
+    }
+
+    /** The string and builder based conversion that CriteoExampleParser replaced. */
+    private static Example previousParse(String serializedExample) {
+        String[] splitExample = serializedExample.split(",", -1);
+        Features.Builder featuresBuilder = Features.newBuilder();
+        featuresBuilder.putFeature("clicked", longFeature(splitExample[0]));
+        int count = 1;
+        for (; count < 14; count++) {
+            featuresBuilder.putFeature(
+                    String.format("int-feature-%d", count), longFeature(splitExample[count]));
+        }
+        for (; count < 40; count++) {
+            featuresBuilder.putFeature(
+                    String.format("categorical-feature-%d", count),
+                    Feature.newBuilder()
+                            .setBytesList(
+                                    BytesList.newBuilder()
+                                            .addValue(ByteString.copyFromUtf8(splitExample[count])))
+                            .build());
+        }
+        return Example.newBuilder().setFeatures(featuresBuilder.build()).build();
+    }
+
+    private static Feature longFeature(String value) {
+        long lValue = value.isEmpty() ? 0L : Long.parseLong(value);
+        return Feature.newBuilder()
+                .setInt64List(Int64List.newBuilder().addValue(lValue).build())
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.protobuf.ByteString;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.tensorflow.example.BytesList;
+import org.tensorflow.example.Example;
+import org.tensorflow.example.Feature;
+import org.tensorflow.example.Features;
+import org.tensorflow.example.FloatList;
+import org.tensorflow.example.Int64List;
+
+import java.util.Random;
+
+@RunWith(JUnit4.class)
+public final class ExampleWriterTest {
+    private static final int NUM_PIXELS = 784;
+    private static final String CRITEO_ROW =
+            "1,-3,,0,9223372036854775807,-9223372036854775808,127,128,16384,,,-1,300,,"
+                    + "68fd1e64,,caf\u00e9,\u65e5\u672c\u8a9e,25c83c98,7e0ccccf,de7995b8,"
+                    + "1f89b562,a73ee510,a8cd5504,b2cb9c98,37c9c164,2824a5f6,1adce6ef,8ba8b39a,"
+                    + "891b62e7,e5ba7672,f54016b9,21ddcdc9,b1252a9d,07b5194c,,3a171ecb,"
+                    + "c5c50484,e8b83407,";
+
+    @Test
+    public void writesCriteoRowsLikeBuilders() {
+        String[] columns = CRITEO_ROW.split(",", -1);
+        Features.Builder features = Features.newBuilder();
+        ExampleWriter writer = ExampleWriter.get();
+        for (int i = 0; i < 40; i++) {
+            String name =
+                    i == 0 ? "clicked" : (i <= 13 ? "int-feature-" : "categorical-feature-") + i;
+            if (i <= 13) {
+                long value = columns[i].isEmpty() ? 0L : Long.parseLong(columns[i]);
+                features.putFeature(name, int64Feature(value));
+                writer.addInt64(ExampleWriter.name(name), value);
+            } else {
+                byte[] value = columns[i].getBytes(UTF_8);
+                features.putFeature(name, bytesFeature(columns[i]));
+                writer.addBytes(ExampleWriter.name(name), value, 0, value.length);
+            }
+        }
+        byte[] expected = example(features);
+        assertArrayEquals(expected, writer.toByteArray());
+        assertArrayEquals(expected, CriteoExampleParser.serialize(CRITEO_ROW.getBytes(UTF_8)));
+    }
+
+    @Test
+    public void writesMnistRowsLikeBuilders() {
+        float[] pixels = new float[NUM_PIXELS];
+        for (int i = 0; i < NUM_PIXELS; i++) {
+            pixels[i] = (i % 7) / 6f;
+        }
+        pixels[1] = -0f;
+        pixels[2] = Float.NaN;
+        pixels[3] = Float.MIN_VALUE;
+        pixels[4] = Float.NEGATIVE_INFINITY;
+        for (long label : new long[] {0, 7, -1, Long.MIN_VALUE}) {
+            assertArrayEquals(
+                    example(
+                            Features.newBuilder()
+                                    .putFeature("x", floatFeature(pixels, NUM_PIXELS))
+                                    .putFeature("y", int64Feature(label))),
+                    ExampleWriter.get()
+                            .addFloats(ExampleWriter.name("x"), pixels, NUM_PIXELS)
+                            .addInt64(ExampleWriter.name("y"), label)
+                            .toByteArray());
+        }
+    }
+
+    @Test
+    public void writesKerasRowsLikeBuilders() {
+        Random random = new Random(42);
+        for (int example = 0; example < 20; example++) {
+            float[] inputs = new float[NUM_PIXELS];
+            for (int i = 0; i < NUM_PIXELS; i++) {
+                inputs[i] = random.nextFloat();
+            }
+            long label = random.nextInt(2);
+            assertArrayEquals(
+                    example(
+                            Features.newBuilder()
+                                    .putFeature("x", floatFeature(inputs, NUM_PIXELS))
+                                    .putFeature("y", int64Feature(label))),
+                    ExampleWriter.get()
+                            .addFloats(ExampleWriter.name("x"), inputs, NUM_PIXELS)
+                            .addInt64(ExampleWriter.name("y"), label)
+                            .toByteArray());
+        }
+    }
+
+    @Test
+    public void writesEmptyListsAndNamesLikeBuilders() {
+        byte[] empty = new byte[0];
+        assertArrayEquals(
+                example(
+                        Features.newBuilder()
+                                .putFeature("floats", floatFeature(new float[0], 0))
+                                .putFeature("", bytesFeature(""))
+                                .putFeature("\u00fcber", int64Feature(0))),
+                ExampleWriter.get()
+                        .addFloats(ExampleWriter.name("floats"), new float[0], 0)
+                        .addBytes(ExampleWriter.name(""), empty, 0, 0)
+                        .addInt64(ExampleWriter.name("\u00fcber"), 0)
+                        .toByteArray());
+        // The converters always set features, so even an empty Example has the field.
+        assertArrayEquals(example(Features.newBuilder()), ExampleWriter.get().toByteArray());
+    }
+
+    @Test
+    public void writesBytesFromTheMiddleOfAnArray() {
+        byte[] row = "a,b\u00e9c,d".getBytes(UTF_8);
+        assertArrayEquals(
+                example(Features.newBuilder().putFeature("f", bytesFeature("b\u00e9c"))),
+                ExampleWriter.get().addBytes(ExampleWriter.name("f"), row, 2, 4).toByteArray());
+    }
+
+    @Test
+    public void writesManyFeaturesLikeBuilders() {
+        // More features than the writer's initial capacity, so its arrays grow.
+        Features.Builder features = Features.newBuilder();
+        ExampleWriter writer = ExampleWriter.get();
+        for (int i = 0; i < 100; i++) {
+            features.putFeature("f" + i, int64Feature(i * 1000003L));
+            writer.addInt64(ExampleWriter.name("f" + i), i * 1000003L);
+        }
+        assertArrayEquals(example(features), writer.toByteArray());
+    }
+
+    private static byte[] example(Features.Builder features) {
+        return Example.newBuilder().setFeatures(features).build().toByteArray();
+    }
+
+    private static Feature int64Feature(long value) {
+        return Feature.newBuilder().setInt64List(Int64List.newBuilder().addValue(value)).build();
+    }
+
+    private static Feature bytesFeature(String value) {
+        return Feature.newBuilder()
+                .setBytesList(BytesList.newBuilder().addValue(ByteString.copyFromUtf8(value)))
+                .build();
+    }
+
+    private static Feature floatFeature(float[] values, int count) {
+        FloatList.Builder list = FloatList.newBuilder();
+        for (int i = 0; i < count; i++) {
+            list.addValue(values[i]);
+        }
+        return Feature.newBuilder().setFloatList(list).build();
+    }
+}
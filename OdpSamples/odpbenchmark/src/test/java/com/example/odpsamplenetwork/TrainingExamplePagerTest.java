@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import android.adservices.ondevicepersonalization.TrainingExampleRecord;
+import android.adservices.ondevicepersonalization.TrainingExamplesOutput;
+
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+@RunWith(JUnit4.class)
+public final class TrainingExamplePagerTest {
+    private static final int PARALLELISM = 4;
+
+    private final ListeningExecutorService mExecutor =
+            MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(PARALLELISM));
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void tokenRoundTrips() {
+        for (long position :
+                new long[] {0, 1, 127, 128, 300, 1L << 35, Long.MAX_VALUE - 1, Long.MAX_VALUE}) {
+            assertEquals(
+                    position,
+                    TrainingExamplePager.decodeToken(TrainingExamplePager.encodeToken(position)));
+        }
+        assertArrayEquals(new byte[] {1, 0}, TrainingExamplePager.encodeToken(0));
+        assertArrayEquals(
+                new byte[] {1, (byte) 0xAC, 0x02}, TrainingExamplePager.encodeToken(300));
+    }
+
+    @Test
+    public void decodesMissingOrUnknownTokensAsStart() {
+        assertEquals(0, TrainingExamplePager.decodeToken(null));
+        assertEquals(0, TrainingExamplePager.decodeToken(new byte[0]));
+        assertEquals(0, TrainingExamplePager.decodeToken(new byte[] {1}));
+        // Unknown version bytes, including the "token<n>" strings written before paging.
+        assertEquals(0, TrainingExamplePager.decodeToken(new byte[] {2, 5}));
+        assertEquals(0, TrainingExamplePager.decodeToken(new byte[] {0, 5}));
+        assertEquals(0, TrainingExamplePager.decodeToken("token7".getBytes()));
+        // Truncated in the middle of the varint.
+        assertEquals(0, TrainingExamplePager.decodeToken(new byte[] {1, (byte) 0x80}));
+    }
+
+    @Test
+    public void rejectsVarintOverflow() {
+        // Ten continuation bytes and more: longer than any long.
+        byte[] endless = new byte[12];
+        Arrays.fill(endless, (byte) 0xFF);
+        endless[0] = 1;
+        assertEquals(0, TrainingExamplePager.decodeToken(endless));
+        // Bits above 63 in the tenth byte.
+        assertEquals(0, TrainingExamplePager.decodeToken(varint(0x7F, 0x02)));
+        assertEquals(0, TrainingExamplePager.decodeToken(varint(0x7F, 0x7F)));
+        // Bit 63 alone fits, but is not a valid position.
+        assertEquals(0, TrainingExamplePager.decodeToken(varint(0x7F, 0x01)));
+    }
+
+    @Test
+    public void resumesFromTokenAndEndsPageAtEndOfSource() throws Exception {
+        TrainingExamplePager.ExampleSource source = source(250);
+
+        List<TrainingExampleRecord> first = page(source, 100, false, null);
+        assertPositions(first, 0, 100);
+        List<TrainingExampleRecord> second = page(source, 100, false, lastToken(first));
+        assertPositions(second, 100, 100);
+        List<TrainingExampleRecord> third = page(source, 100, false, lastToken(second));
+        assertPositions(third, 200, 50);
+        assertEquals(250, TrainingExamplePager.decodeToken(lastToken(third)));
+    }
+
+    @Test
+    public void tokenAtEndOfSourceStartsOver() throws Exception {
+        TrainingExamplePager.ExampleSource source = source(30);
+        List<TrainingExampleRecord> records =
+                page(source, 100, false, TrainingExamplePager.encodeToken(30));
+        assertPositions(records, 0, 30);
+        // A token past the end, e.g. from a larger source, starts over too.
+        assertPositions(page(source, 10, false, TrainingExamplePager.encodeToken(500)), 0, 10);
+        assertEquals(0, page(source(0), 10, false, null).size());
+    }
+
+    @Test
+    public void skipsFailuresAgainstPageSize() throws Exception {
+        TrainingExamplePager.ExampleSource source = failingAt(source(100), 3);
+        List<TrainingExampleRecord> records = page(source, 10, false, null);
+        assertEquals(9, records.size());
+        assertEquals(2, position(records.get(2)));
+        assertEquals(4, position(records.get(3)));
+        assertEquals(10, TrainingExamplePager.decodeToken(lastToken(records)));
+    }
+
+    @Test
+    public void stopsAtFailureWhenAsked() throws Exception {
+        TrainingExamplePager.ExampleSource source = failingAt(source(100), 3);
+        List<TrainingExampleRecord> records = page(source, 10, true, null);
+        assertPositions(records, 0, 3);
+        // Resuming at the failed row starts over, like a call before paging.
+        assertPositions(page(source, 10, true, lastToken(records)), 0, 3);
+    }
+
+    @Test
+    public void boundsPageByBytes() throws Exception {
+        int size = TrainingExamplePager.MAX_BYTES_PER_PAGE / 4;
+        TrainingExamplePager.ExampleSource source = position -> new byte[size];
+        assertEquals(4, page(source, 100, false, null).size());
+    }
+
+    @Test
+    public void emptyPageSizeEmitsNothing() throws Exception {
+        assertEquals(0, page(source(10), 0, false, null).size());
+    }
+
+    private List<TrainingExampleRecord> page(
+            TrainingExamplePager.ExampleSource source,
+            int pageSize,
+            boolean stopAtFailure,
+            byte[] token)
+            throws Exception {
+        TrainingExamplesOutput.Builder builder = new TrainingExamplesOutput.Builder();
+        int count =
+                TrainingExamplePager.addPage(
+                        source, pageSize, stopAtFailure, token, builder, mExecutor, PARALLELISM);
+        List<TrainingExampleRecord> records = builder.build().getTrainingExampleRecords();
+        assertEquals(count, records.size());
+        return records;
+    }
+
+    /** Returns a source of {@code size} examples, each holding its position as one byte. */
+    private static TrainingExamplePager.ExampleSource source(int size) {
+        return position -> position < size ? new byte[] {(byte) position} : null;
+    }
+
+    private static TrainingExamplePager.ExampleSource failingAt(
+            TrainingExamplePager.ExampleSource source, long failure) {
+        return position -> {
+            if (position == failure) {
+                throw new IllegalStateException("bad row " + position);
+            }
+            return source.get(position);
+        };
+    }
+
+    private static void assertPositions(List<TrainingExampleRecord> records, int from, int count) {
+        assertEquals(count, records.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(from + i, position(records.get(i)));
+            assertEquals(
+                    from + i + 1,
+                    TrainingExamplePager.decodeToken(records.get(i).getResumptionToken()));
+        }
+    }
+
+    private static int position(TrainingExampleRecord record) {
+        return record.getTrainingExample()[0] & 0xFF;
+    }
+
+    private static byte[] lastToken(List<TrainingExampleRecord> records) {
+        return records.get(records.size() - 1).getResumptionToken();
+    }
+
+    /** Returns a version 1 token of nine continued {@code fill} bytes, then {@code last}. */
+    private static byte[] varint(int fill, int last) {
+        byte[] token = new byte[11];
+        token[0] = 1;
+        for (int i = 1; i < 10; i++) {
+            token[i] = (byte) (fill | 0x80);
+        }
+        token[10] = (byte) last;
+        return token;
+    }
+}
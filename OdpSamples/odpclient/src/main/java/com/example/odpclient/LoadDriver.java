@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpclient;
+
+import android.os.Trace;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives a service with concurrent execute() and requestSurfacePackage() sequences and records
+ * the latency of every call.
+ *
+ * <p>The driver only talks to a {@link Client}, so the same load runs against the platform from
+ * {@link MainActivity} and against an in-process stand-in of the service on the JVM. Every call
+ * is also traced as an async section whose cookie is the sequence number, so overlapping calls
+ * can be told apart in a trace.
+ *
+ * @param <T> the token execute() returns and requestSurfacePackage() renders
+ */
+public final class LoadDriver<T> {
+    private static final String TRACE_PREFIX = "OdpClient:loadTest:";
+
+    /** Issues the calls of one sequence. Neither call may block. */
+    public interface Client<T> {
+        /** Starts execute() for {@code keyword}. The result is the token to render, or null. */
+        ListenableFuture<T> execute(String keyword);
+
+        /** Starts requestSurfacePackage() for a token returned by {@link #execute}. */
+        ListenableFuture<?> requestSurfacePackage(T token);
+    }
+
+    private final Client<T> mClient;
+
+    public LoadDriver(Client<T> client) {
+        mClient = client;
+    }
+
+    /**
+     * Runs {@code requests} sequences with at most {@code concurrency} in flight and waits for
+     * all of them. Sequence {@code i} uses {@code keywords.get(i % keywords.size())}, so a
+     * keyword listed more than once gets a larger share of the load.
+     */
+    public Report run(int concurrency, int requests, List<String> keywords)
+            throws InterruptedException {
+        if (concurrency < 1 || requests < 0 || keywords.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "concurrency: " + concurrency + ", requests: " + requests
+                    + ", keywords: " + keywords);
+        }
+        Report report = new Report(concurrency, requests);
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+        long startNanos = System.nanoTime();
+        for (int sequence = 0; sequence < requests; sequence++) {
+            inFlight.acquire();
+            startSequence(
+                    sequence,
+                    keywords.get(sequence % keywords.size()),
+                    report,
+                    () -> {
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        report.mWallNanos = System.nanoTime() - startNanos;
+        return report;
+    }
+
+    private void startSequence(int sequence, String keyword, Report report, Runnable finish) {
+        long startNanos = System.nanoTime();
+        Trace.beginAsyncSection(TRACE_PREFIX + "execute", sequence);
+        Futures.addCallback(
+                call(() -> mClient.execute(keyword)),
+                new FutureCallback<T>() {
+                    @Override
+                    public void onSuccess(T token) {
+                        Trace.endAsyncSection(TRACE_PREFIX + "execute", sequence);
+                        report.mExecute.record(System.nanoTime() - startNanos);
+                        if (token == null) {
+                            report.mNoToken.incrementAndGet();
+                            finish.run();
+                            return;
+                        }
+                        render(sequence, token, startNanos, report, finish);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        Trace.endAsyncSection(TRACE_PREFIX + "execute", sequence);
+                        report.mExecuteErrors.incrementAndGet();
+                        finish.run();
+                    }
+                },
+                MoreExecutors.directExecutor());
+    }
+
+    private void render(
+            int sequence, T token, long sequenceStartNanos, Report report, Runnable finish) {
+        long startNanos = System.nanoTime();
+        Trace.beginAsyncSection(TRACE_PREFIX + "requestSurfacePackage", sequence);
+        Futures.addCallback(
+                call(() -> mClient.requestSurfacePackage(token)),
+                new FutureCallback<Object>() {
+                    @Override
+                    public void onSuccess(Object unused) {
+                        Trace.endAsyncSection(TRACE_PREFIX + "requestSurfacePackage", sequence);
+                        long endNanos = System.nanoTime();
+                        report.mRequestSurfacePackage.record(endNanos - startNanos);
+                        report.mSequence.record(endNanos - sequenceStartNanos);
+                        finish.run();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        Trace.endAsyncSection(TRACE_PREFIX + "requestSurfacePackage", sequence);
+                        report.mRequestSurfacePackageErrors.incrementAndGet();
+                        finish.run();
+                    }
+                },
+                MoreExecutors.directExecutor());
+    }
+
+    // A client that throws instead of returning a failed future still finishes the sequence.
+    private static <V> ListenableFuture<V> call(Call<V> call) {
+        try {
+            return call.start();
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private interface Call<V> {
+        ListenableFuture<V> start();
+    }
+
+    /** Latencies and outcomes of one {@link #run}. */
+    public static final class Report {
+        private final int mConcurrency;
+        private final int mRequests;
+        private long mWallNanos;
+        private final LatencyHistogram mExecute = new LatencyHistogram();
+        private final LatencyHistogram mRequestSurfacePackage = new LatencyHistogram();
+        // execute() through requestSurfacePackage() for sequences that rendered.
+        private final LatencyHistogram mSequence = new LatencyHistogram();
+        private final AtomicLong mNoToken = new AtomicLong();
+        private final AtomicLong mExecuteErrors = new AtomicLong();
+        private final AtomicLong mRequestSurfacePackageErrors = new AtomicLong();
+
+        private Report(int concurrency, int requests) {
+            mConcurrency = concurrency;
+            mRequests = requests;
+        }
+
+        /** Returns the report as a single JSON object string. */
+        public String toJson() {
+            double seconds = mWallNanos / 1e9;
+            StringBuilder sb = new StringBuilder("{")
+                    .append("\"concurrency\":").append(mConcurrency)
+                    .append(",\"requests\":").append(mRequests)
+                    .append(",\"wall_ms\":").append(mWallNanos / 1000000L)
+                    .append(",\"requests_per_second\":")
+                    .append(seconds > 0 ? Math.round(mRequests / seconds) : 0)
+                    .append(",\"latency_us\":{");
+            appendHistogram(sb, "execute", mExecute).append(',');
+            appendHistogram(sb, "requestSurfacePackage", mRequestSurfacePackage).append(',');
+            appendHistogram(sb, "sequence", mSequence);
+            return sb.append("},\"no_token\":").append(mNoToken.get())
+                    .append(",\"errors\":{\"execute\":").append(mExecuteErrors.get())
+                    .append(",\"requestSurfacePackage\":")
+                    .append(mRequestSurfacePackageErrors.get())
+                    .append("}}")
+                    .toString();
+        }
+
+        private static StringBuilder appendHistogram(
+                StringBuilder sb, String name, LatencyHistogram h) {
+            return sb.append('"').append(name).append("\":{")
+                    .append("\"count\":").append(h.count())
+                    .append(",\"p50\":").append(h.percentileMicros(50))
+                    .append(",\"p90\":").append(h.percentileMicros(90))
+                    .append(",\"p99\":").append(h.percentileMicros(99))
+                    .append(",\"max\":").append(h.maxMicros())
+                    .append('}');
+        }
+    }
+
+    /**
+     * Log-linear histogram over microseconds: each power of two is split into four sub-buckets,
+     * which bounds the percentile error to 25% with a fixed 160-slot array. The same layout as
+     * the sample network's in-process metrics, so the two sides of a call compare directly.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int NUM_BUCKETS = 40 * SUB_BUCKETS;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mMaxMicros = new AtomicLong();
+
+        void record(long elapsedNanos) {
+            long micros = Math.max(0L, elapsedNanos / 1000L);
+            mBuckets.incrementAndGet(bucketIndex(micros));
+            mCount.incrementAndGet();
+            long max = mMaxMicros.get();
+            while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+                max = mMaxMicros.get();
+            }
+        }
+
+        long count() {
+            return mCount.get();
+        }
+
+        long maxMicros() {
+            return mMaxMicros.get();
+        }
+
+        long percentileMicros(double percentile) {
+            long total = mCount.get();
+            if (total == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), mMaxMicros.get());
+                }
+            }
+            return mMaxMicros.get();
+        }
+
+        private static int bucketIndex(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int log2 = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (log2 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            int index = (log2 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+            return Math.min(index, NUM_BUCKETS - 1);
+        }
+
+        private static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int log2 = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int sub = index % SUB_BUCKETS;
+            long width = 1L << (log2 - SUB_BUCKET_BITS);
+            return (1L << log2) + (sub + 1) * width - 1;
+        }
+    }
+}
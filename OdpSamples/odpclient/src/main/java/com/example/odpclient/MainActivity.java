@@ -18,9 +18,11 @@ package com.example.odpclient;
 
 import android.adservices.ondevicepersonalization.OnDevicePersonalizationManager;
 import android.adservices.ondevicepersonalization.OnDevicePersonalizationManager.ExecuteResult;
+import android.adservices.ondevicepersonalization.SurfacePackageToken;
 import android.app.Activity;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
@@ -31,6 +33,7 @@ import android.os.OutcomeReceiver;
 import android.os.PersistableBundle;
 import android.os.Process;
 import android.os.StrictMode;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.text.method.ScrollingMovementMethod;
 import android.util.Log;
@@ -39,17 +42,22 @@ import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.ViewSwitcher;
 
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -65,18 +73,34 @@ public class MainActivity extends Activity {
     private static final String ADSERVICES_APEX = "com.google.android.adservices";
     private static final int SURFACE_VIEW_INDEX = 0;
     private static final int MESSAGE_BOX_INDEX = 1;
+    // How long a prefetched token is shown in place of a fresh execute() call.
+    private static final long PREFETCH_TTL_MILLIS = 60 * 1000;
+    // Intent extras that start a load test without any taps, e.g.
+    // adb shell am start -n com.example.odpclient/.MainActivity \
+    //     --ei load_test_requests 200 --ei load_test_concurrency 8 --es load_test_keywords a,a,b
+    private static final String EXTRA_LOAD_TEST_REQUESTS = "load_test_requests";
+    private static final String EXTRA_LOAD_TEST_CONCURRENCY = "load_test_concurrency";
+    private static final String EXTRA_LOAD_TEST_KEYWORDS = "load_test_keywords";
+    private static final int DEFAULT_LOAD_TEST_CONCURRENCY = 4;
+    private static final int DEFAULT_LOAD_TEST_REQUESTS = 100;
     private EditText mTextBox;
     private Button mGetAdButton;
+    private CheckBox mPrefetchCheckBox;
     private EditText mScheduleTrainingTextBox;
     private EditText mScheduleIntervalTextBox;
     private Button mScheduleTrainingButton;
     private Button mCancelTrainingButton;
     private EditText mReportConversionTextBox;
     private Button mReportConversionButton;
+    private EditText mLoadTestTextBox;
+    private Button mLoadTestButton;
     private SurfaceView mRenderedView;
     private TextView mMessageBox;
     private ViewSwitcher mViewSwitcher;
     private Context mContext;
+    private volatile boolean mPrefetchEnabled;
+    // Only read and written on sLightweightExecutor, which runs one task at a time.
+    private PrefetchedToken mPrefetchedToken;
     private static Executor sCallbackExecutor = Executors.newSingleThreadExecutor();
 
     private static final ListeningExecutorService sLightweightExecutor =
@@ -139,24 +163,42 @@ public class MainActivity extends Activity {
         mRenderedView.setVisibility(View.INVISIBLE);
         mRenderedView.getHolder().addCallback(new SurfaceCallback());
         mGetAdButton = findViewById(R.id.get_ad_button);
+        mPrefetchCheckBox = findViewById(R.id.prefetch_check_box);
         mScheduleTrainingButton = findViewById(R.id.schedule_training_button);
         mCancelTrainingButton = findViewById(R.id.cancel_training_button);
         mReportConversionButton = findViewById(R.id.report_conversion_button);
+        mLoadTestButton = findViewById(R.id.load_test_button);
         mTextBox = findViewById(R.id.text_box);
         mScheduleTrainingTextBox = findViewById(R.id.schedule_training_text_box);
         mScheduleIntervalTextBox = findViewById(R.id.schedule_interval_text_box);
         mReportConversionTextBox = findViewById(R.id.report_conversion_text_box);
+        mLoadTestTextBox = findViewById(R.id.load_test_text_box);
         mMessageBox = findViewById(R.id.message_box);
         mMessageBox.setMovementMethod(new ScrollingMovementMethod());
         mViewSwitcher = findViewById(R.id.view_switcher);
         registerGetAdButton();
+        registerPrefetchCheckBox();
         registerScheduleTrainingButton();
         registerReportConversionButton();
         registerCancelTrainingButton();
+        registerLoadTestButton();
 
         Object unusedFuture = Futures.submit(
                 () -> printDebuggingInfo(),
                 sCallbackExecutor);
+
+        Intent intent = getIntent();
+        int loadTestRequests = intent.getIntExtra(EXTRA_LOAD_TEST_REQUESTS, 0);
+        if (loadTestRequests > 0) {
+            int concurrency = intent.getIntExtra(
+                    EXTRA_LOAD_TEST_CONCURRENCY, DEFAULT_LOAD_TEST_CONCURRENCY);
+            String keywords = intent.getStringExtra(EXTRA_LOAD_TEST_KEYWORDS);
+            var unused = sLightweightExecutor.submit(
+                    () -> runLoadTest(
+                            concurrency,
+                            loadTestRequests,
+                            parseKeywords(keywords == null ? "" : keywords)));
+        }
     }
 
     private void registerGetAdButton() {
@@ -166,6 +208,22 @@ public class MainActivity extends Activity {
                 });
     }
 
+    private void registerPrefetchCheckBox() {
+        mPrefetchEnabled = mPrefetchCheckBox.isChecked();
+        mPrefetchCheckBox.setOnCheckedChangeListener(
+                (buttonView, isChecked) -> {
+                    mPrefetchEnabled = isChecked;
+                    schedulePrefetch();
+                });
+        // Leaving the keyword box is the cue that a tap on the ad button is likely next.
+        mTextBox.setOnFocusChangeListener(
+                (v, hasFocus) -> {
+                    if (!hasFocus) {
+                        schedulePrefetch();
+                    }
+                });
+    }
+
     private void registerReportConversionButton() {
         mReportConversionButton.setOnClickListener(
                 v -> {
@@ -179,55 +237,28 @@ public class MainActivity extends Activity {
 
     private void makeRequest() {
         try {
-            var odpManager = getOdpManager();
-            CountDownLatch latch = new CountDownLatch(1);
-            Log.i(TAG, "Starting execute() " + getResources().getString(R.string.get_ad)
-                    + " with " + mTextBox.getHint().toString() + ": "
-                    + mTextBox.getText().toString());
-            AtomicReference<ExecuteResult> executeResult = new AtomicReference<>();
-            PersistableBundle appParams = new PersistableBundle();
-            appParams.putString("keyword", mTextBox.getText().toString());
-
-            Trace.beginAsyncSection("OdpClient:makeRequest:odpManager.execute", 0);
-            odpManager.execute(
-                    ComponentName.createRelative(
-                            SERVICE_PACKAGE,
-                            SERVICE_CLASS),
-                    appParams,
-                    sCallbackExecutor,
-                    new OutcomeReceiver<ExecuteResult, Exception>() {
-                        @Override
-                        public void onResult(ExecuteResult result) {
-                            Trace.endAsyncSection("OdpClient:makeRequest:odpManager.execute", 0);
-                            Log.i(TAG, "execute() success: " + result);
-                            if (result != null) {
-                                executeResult.set(result);
-                            } else {
-                                Log.e(TAG, "No results!");
-                            }
-                            clearText();
-                            latch.countDown();
-                        }
-
-                        @Override
-                        public void onError(Exception e) {
-                            Trace.endAsyncSection("OdpClient:makeRequest:odpManager.execute", 0);
-                            showError("OdpClient:makeRequest:odpManager.execute", e);
-                            latch.countDown();
-                        }
-                    });
-            latch.await();
-            Log.d(TAG, "makeRequest:odpManager.execute wait success");
+            String keyword = mTextBox.getText().toString();
+            SurfacePackageToken token = takePrefetchedToken(keyword);
+            if (token != null) {
+                Log.i(TAG, "Using prefetched surfacePackageToken for keyword: " + keyword);
+            } else {
+                Log.i(TAG, "Starting execute() " + getResources().getString(R.string.get_ad)
+                        + " with " + mTextBox.getHint().toString() + ": " + keyword);
+                token = executeForToken("makeRequest", keyword);
+            }
+            if (mPrefetchEnabled) {
+                // Refill the slot for the next tap while this ad renders.
+                var unused = sLightweightExecutor.submit(() -> prefetch(keyword));
+            }
 
-            if (executeResult.get() == null
-                    || executeResult.get().getSurfacePackageToken() == null) {
+            if (token == null) {
                 Log.i(TAG, "No surfacePackageToken returned, skipping render.");
                 return;
             }
 
             Trace.beginAsyncSection("OdpClient:makeRequest:odpManager.requestSurfacePackage", 0);
-            odpManager.requestSurfacePackage(
-                    executeResult.get().getSurfacePackageToken(),
+            getOdpManager().requestSurfacePackage(
+                    token,
                     mRenderedView.getHostToken(),
                     getDisplay().getDisplayId(),
                     mRenderedView.getWidth(),
@@ -266,6 +297,216 @@ public class MainActivity extends Activity {
         }
     }
 
+    /**
+     * Calls execute() for {@code keyword} and waits for its result. Returns the token to render,
+     * or null if execute() failed or returned nothing to render.
+     */
+    private SurfacePackageToken executeForToken(String caller, String keyword)
+            throws InterruptedException {
+        var odpManager = getOdpManager();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<ExecuteResult> executeResult = new AtomicReference<>();
+        PersistableBundle appParams = new PersistableBundle();
+        appParams.putString("keyword", keyword);
+
+        String section = "OdpClient:" + caller + ":odpManager.execute";
+        Trace.beginAsyncSection(section, 0);
+        odpManager.execute(
+                ComponentName.createRelative(
+                        SERVICE_PACKAGE,
+                        SERVICE_CLASS),
+                appParams,
+                sCallbackExecutor,
+                new OutcomeReceiver<ExecuteResult, Exception>() {
+                    @Override
+                    public void onResult(ExecuteResult result) {
+                        Trace.endAsyncSection(section, 0);
+                        Log.i(TAG, "execute() success: " + result);
+                        if (result != null) {
+                            executeResult.set(result);
+                        } else {
+                            Log.e(TAG, "No results!");
+                        }
+                        clearText();
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        Trace.endAsyncSection(section, 0);
+                        showError(section, e);
+                        latch.countDown();
+                    }
+                });
+        latch.await();
+        Log.d(TAG, caller + ":odpManager.execute wait success");
+        return executeResult.get() == null ? null : executeResult.get().getSurfacePackageToken();
+    }
+
+    /** Runs execute() for the current keyword ahead of a tap, if prefetching is enabled. */
+    private void schedulePrefetch() {
+        if (!mPrefetchEnabled) {
+            return;
+        }
+        String keyword = mTextBox.getText().toString();
+        var unused = sLightweightExecutor.submit(() -> prefetch(keyword));
+    }
+
+    private void prefetch(String keyword) {
+        try {
+            PrefetchedToken prefetched = mPrefetchedToken;
+            if (prefetched != null && prefetched.isUsableFor(keyword)) {
+                return;
+            }
+            Log.i(TAG, "Prefetching execute() with keyword: " + keyword);
+            SurfacePackageToken token = executeForToken("prefetch", keyword);
+            mPrefetchedToken =
+                    token == null
+                            ? null
+                            : new PrefetchedToken(
+                                    keyword,
+                                    token,
+                                    SystemClock.elapsedRealtime() + PREFETCH_TTL_MILLIS);
+        } catch (Throwable e) {
+            showError("prefetch", e);
+        }
+    }
+
+    /** Returns the prefetched token if it was fetched for {@code keyword} and is unexpired. */
+    private SurfacePackageToken takePrefetchedToken(String keyword) {
+        PrefetchedToken prefetched = mPrefetchedToken;
+        // A token is rendered at most once.
+        mPrefetchedToken = null;
+        return prefetched != null && prefetched.isUsableFor(keyword) ? prefetched.mToken : null;
+    }
+
+    /** A token returned by execute() ahead of a tap, with the keyword it was fetched for. */
+    private static final class PrefetchedToken {
+        final String mKeyword;
+        final SurfacePackageToken mToken;
+        final long mExpiresAtMillis;
+
+        PrefetchedToken(String keyword, SurfacePackageToken token, long expiresAtMillis) {
+            mKeyword = keyword;
+            mToken = token;
+            mExpiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isUsableFor(String keyword) {
+            return mKeyword.equals(keyword) && mExpiresAtMillis > SystemClock.elapsedRealtime();
+        }
+    }
+
+    private void registerLoadTestButton() {
+        mLoadTestButton.setOnClickListener(
+                v -> {
+                    // "<concurrency>,<requests>"; either may be left out.
+                    String[] settings = mLoadTestTextBox.getText().toString().split(",");
+                    int concurrency = parseIntOrDefault(settings, 0, DEFAULT_LOAD_TEST_CONCURRENCY);
+                    int requests = parseIntOrDefault(settings, 1, DEFAULT_LOAD_TEST_REQUESTS);
+                    List<String> keywords = parseKeywords(mTextBox.getText().toString());
+                    var unused = sLightweightExecutor.submit(
+                            () -> runLoadTest(concurrency, requests, keywords));
+                });
+    }
+
+    private static int parseIntOrDefault(String[] values, int index, int defaultValue) {
+        if (index >= values.length || values[index].isBlank()) {
+            return defaultValue;
+        }
+        return Integer.parseInt(values[index].trim());
+    }
+
+    /** Splits a comma-separated keyword mix. Repeating a keyword weights it. */
+    private static List<String> parseKeywords(String keywords) {
+        List<String> mix = new ArrayList<>();
+        for (String keyword : keywords.split(",")) {
+            mix.add(keyword.trim());
+        }
+        return mix;
+    }
+
+    private void runLoadTest(int concurrency, int requests, List<String> keywords) {
+        try {
+            Log.i(TAG, "Starting load test: " + requests + " requests, concurrency "
+                    + concurrency + ", keywords " + keywords);
+            showText("Running load test...");
+            LoadDriver.Report report =
+                    new LoadDriver<>(new OdpManagerLoadClient(getOdpManager()))
+                            .run(concurrency, requests, keywords);
+            Log.i(TAG, "Load test report: " + report.toJson());
+            showText(report.toJson());
+        } catch (Throwable e) {
+            showError("runLoadTest", e);
+        }
+    }
+
+    /**
+     * Issues load test calls to the sample network through the platform. Surfaces are released
+     * as soon as they arrive, since only the latency of getting them is measured.
+     */
+    private class OdpManagerLoadClient implements LoadDriver.Client<SurfacePackageToken> {
+        private final OnDevicePersonalizationManager mOdpManager;
+
+        OdpManagerLoadClient(OnDevicePersonalizationManager odpManager) {
+            mOdpManager = odpManager;
+        }
+
+        @Override
+        public ListenableFuture<SurfacePackageToken> execute(String keyword) {
+            SettableFuture<SurfacePackageToken> token = SettableFuture.create();
+            PersistableBundle appParams = new PersistableBundle();
+            appParams.putString("keyword", keyword);
+            mOdpManager.execute(
+                    ComponentName.createRelative(
+                            SERVICE_PACKAGE,
+                            SERVICE_CLASS),
+                    appParams,
+                    sCallbackExecutor,
+                    new OutcomeReceiver<ExecuteResult, Exception>() {
+                        @Override
+                        public void onResult(ExecuteResult result) {
+                            token.set(result == null ? null : result.getSurfacePackageToken());
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            Log.w(TAG, "Load test execute() failed", e);
+                            token.setException(e);
+                        }
+                    });
+            return token;
+        }
+
+        @Override
+        public ListenableFuture<?> requestSurfacePackage(SurfacePackageToken token) {
+            SettableFuture<Void> rendered = SettableFuture.create();
+            mOdpManager.requestSurfacePackage(
+                    token,
+                    mRenderedView.getHostToken(),
+                    getDisplay().getDisplayId(),
+                    mRenderedView.getWidth(),
+                    mRenderedView.getHeight(),
+                    sCallbackExecutor,
+                    new OutcomeReceiver<SurfacePackage, Exception>() {
+                        @Override
+                        public void onResult(SurfacePackage surfacePackage) {
+                            if (surfacePackage != null) {
+                                surfacePackage.release();
+                            }
+                            rendered.set(null);
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            Log.w(TAG, "Load test requestSurfacePackage() failed", e);
+                            rendered.setException(e);
+                        }
+                    });
+            return rendered;
+        }
+    }
+
     private void registerScheduleTrainingButton() {
         mScheduleTrainingButton.setOnClickListener(
                 v -> {
@@ -467,6 +708,7 @@ public class MainActivity extends Activity {
     public void onResume() {
         Log.d(TAG, "onResume");
         super.onResume();
+        schedulePrefetch();
     }
 
     @Override
@@ -19,6 +19,7 @@ android {
   sourceSets.getByName("main") {
     java.srcDir("src/main/java")
     java.srcDir("../../setfilters/setfilters/src")
+    java.srcDir("../../FilterCodec/src/main/java")
   }
 
   buildTypes {
@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.google.setfilters.cuckoofilter.CuckooFilter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, column-oriented ad catalog.
+ *
+ * <p>Ad {@code i} is described by entry {@code i} of each column. Numeric attributes are
+ * primitive arrays, all embeddings share one contiguous array, and targeting lists, filters
+ * and template ids are ordinals into tables of distinct values, so ads that share a value
+ * share one instance and per-request checks can be evaluated once per distinct value.
+ *
+ * <p>Targeting lists hold term ids rather than strings. Ids below the size of the downloaded
+ * {@link TermDictionary} are the dictionary's; terms that ads spell out as strings get the
+ * ids after it.
+ */
+final class AdCatalog {
+    static final int EMBEDDING_SIZE = 100;
+    /** Ordinal of an absent list, filter or template. */
+    static final int NONE = -1;
+
+    private static final String TAG = SampleHandler.TAG;
+
+    final int mSize;
+    final String[] mIds;
+    final double[] mMaxCpc;
+    /** Embedding of ad {@code i} at {@code [i * EMBEDDING_SIZE, (i + 1) * EMBEDDING_SIZE)}. */
+    final float[] mEmbeddings;
+    final String[] mLandingPages;
+    final String[] mTexts;
+
+    // Ordinals into mTermSets; NONE when the ad has no such list.
+    final int[] mKeywords;
+    final int[] mApps;
+    final int[] mExcludes;
+    /** Sorted, distinct term ids of each targeting list. */
+    final int[][] mTermSets;
+    private final HashMap<String, Integer> mTermIds;
+
+    // Ordinals into mFilters; NONE when the ad has no such filter.
+    final int[] mKeywordFilters;
+    final int[] mAppFilters;
+    final int[] mExcludeFilters;
+    final CuckooFilter<String>[] mFilters;
+
+    /** Ordinals into mTemplateIds; NONE when the ad renders without a template. */
+    final int[] mTemplates;
+    final String[] mTemplateIds;
+
+    /** The catalog version the ads were read at. */
+    final long mVersion;
+    final long mLoadedAtMillis;
+
+    private AdCatalog(Builder b, long version, long loadedAtMillis) {
+        mSize = b.mSize;
+        mIds = Arrays.copyOf(b.mIds, mSize);
+        mMaxCpc = Arrays.copyOf(b.mMaxCpc, mSize);
+        mEmbeddings = Arrays.copyOf(b.mEmbeddings, mSize * EMBEDDING_SIZE);
+        mLandingPages = Arrays.copyOf(b.mLandingPages, mSize);
+        mTexts = Arrays.copyOf(b.mTexts, mSize);
+        mKeywords = Arrays.copyOf(b.mKeywords, mSize);
+        mApps = Arrays.copyOf(b.mApps, mSize);
+        mExcludes = Arrays.copyOf(b.mExcludes, mSize);
+        mTermSets = b.mTermSets.toArray(new int[0][]);
+        mTermIds = b.mTermIds;
+        mKeywordFilters = Arrays.copyOf(b.mKeywordFilters, mSize);
+        mAppFilters = Arrays.copyOf(b.mAppFilters, mSize);
+        mExcludeFilters = Arrays.copyOf(b.mExcludeFilters, mSize);
+        @SuppressWarnings("unchecked")
+        CuckooFilter<String>[] filters = b.mFilters.toArray(new CuckooFilter[0]);
+        mFilters = filters;
+        mTemplates = Arrays.copyOf(b.mTemplates, mSize);
+        mTemplateIds = b.mTemplateIds.toArray(new String[0]);
+        mVersion = version;
+        mLoadedAtMillis = loadedAtMillis;
+    }
+
+    /** Returns the id of {@code term}, or NONE if no targeting list can contain it. */
+    int getTermId(String term) {
+        Integer id = mTermIds.get(term);
+        return id == null ? NONE : id;
+    }
+
+    String getTemplateId(int ad) {
+        return mTemplates[ad] == NONE ? null : mTemplateIds[mTemplates[ad]];
+    }
+
+    /** Copies the embedding of ad {@code ad} into {@code dest}. */
+    void copyEmbedding(int ad, float[] dest) {
+        System.arraycopy(mEmbeddings, ad * EMBEDDING_SIZE, dest, 0, EMBEDDING_SIZE);
+    }
+
+    /**
+     * Accumulates parsed ads into growable columns. Distinct targeting lists, serialized
+     * filters and template ids are interned as they are added, and so are terms that ads spell
+     * out as strings.
+     */
+    static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+        private static final int[] NO_IDS = new int[0];
+
+        private int mSize;
+        private String[] mIds = new String[INITIAL_CAPACITY];
+        private double[] mMaxCpc = new double[INITIAL_CAPACITY];
+        private float[] mEmbeddings = new float[INITIAL_CAPACITY * EMBEDDING_SIZE];
+        private String[] mLandingPages = new String[INITIAL_CAPACITY];
+        private String[] mTexts = new String[INITIAL_CAPACITY];
+        private int[] mKeywords = new int[INITIAL_CAPACITY];
+        private int[] mApps = new int[INITIAL_CAPACITY];
+        private int[] mExcludes = new int[INITIAL_CAPACITY];
+        private int[] mKeywordFilters = new int[INITIAL_CAPACITY];
+        private int[] mAppFilters = new int[INITIAL_CAPACITY];
+        private int[] mExcludeFilters = new int[INITIAL_CAPACITY];
+        private int[] mTemplates = new int[INITIAL_CAPACITY];
+
+        private final List<int[]> mTermSets = new ArrayList<>();
+        private final HashMap<TermSetKey, Integer> mTermSetOrdinals = new HashMap<>();
+        private final HashMap<String, Integer> mTermIds = new HashMap<>();
+        // Ids from the dictionary must be below this; -1 when there is no dictionary to check.
+        private final int mDictionarySize;
+        // False for ads that are only rendered, which never read the embedding.
+        private final boolean mRequireEmbedding;
+        private int mNextTermId;
+        private final List<CuckooFilter<String>> mFilters = new ArrayList<>();
+        private final HashMap<String, Integer> mFilterOrdinals = new HashMap<>();
+        private final List<String> mTemplateIds = new ArrayList<>();
+        private final HashMap<String, Integer> mTemplateOrdinals = new HashMap<>();
+
+        /**
+         * Creates a builder for ads written against {@code dictionary}, or for ads whose term
+         * ids are not checked when {@code dictionary} is null.
+         */
+        Builder(List<String> dictionary) {
+            mRequireEmbedding = true;
+            if (dictionary == null) {
+                mDictionarySize = -1;
+                return;
+            }
+            mDictionarySize = dictionary.size();
+            mNextTermId = dictionary.size();
+            for (int id = 0; id < dictionary.size(); id++) {
+                mTermIds.putIfAbsent(dictionary.get(id), id);
+            }
+        }
+
+        /**
+         * Creates a builder for reading single ads to render. Their targeting is not matched
+         * and their embedding is not scored, so ads without one are accepted.
+         */
+        Builder() {
+            mDictionarySize = -1;
+            mRequireEmbedding = false;
+        }
+
+        /**
+         * Parses the JSON ad stored under {@code id} and appends it. Returns false, adding
+         * nothing, if the ad cannot be parsed or, unless it is only read to render, does not
+         * have exactly EMBEDDING_SIZE embedding values.
+         */
+        boolean add(String id, byte[] data) {
+            if (id == null || data == null) {
+                return false;
+            }
+            String dataStr = new String(data, StandardCharsets.UTF_8);
+            try (JsonReader reader = new JsonReader(new StringReader(dataStr))) {
+                double maxCpcPrice = 0.0;
+                List<String> targetKeywords = new ArrayList<>();
+                List<String> targetApps = new ArrayList<>();
+                List<String> excludes = new ArrayList<>();
+                int[] targetKeywordIds = NO_IDS;
+                int[] targetAppIds = NO_IDS;
+                int[] excludeIds = NO_IDS;
+                String landingPage = "";
+                String text = "Click Here!";
+                String templateId = null;
+                String targetKeywordFilter = null;
+                String targetAppFilter = null;
+                String excludeFilter = null;
+                String embeddingFeatures = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (name.equals("max_cpc")) {
+                        maxCpcPrice = reader.nextDouble();
+                    } else if (name.equals("keywords")) {
+                        readJsonArray(reader, targetKeywords);
+                    } else if (name.equals("apps")) {
+                        readJsonArray(reader, targetApps);
+                    } else if (name.equals("excludes")) {
+                        readJsonArray(reader, excludes);
+                    } else if (name.equals("keywordIds")) {
+                        targetKeywordIds = TermDictionary.readIds(reader, mDictionarySize);
+                    } else if (name.equals("appIds")) {
+                        targetAppIds = TermDictionary.readIds(reader, mDictionarySize);
+                    } else if (name.equals("excludeIds")) {
+                        excludeIds = TermDictionary.readIds(reader, mDictionarySize);
+                    } else if (name.equals("landingPage")) {
+                        landingPage = reader.nextString();
+                    } else if (name.equals("text")) {
+                        text = reader.nextString();
+                    } else if (name.equals("template")) {
+                        templateId = reader.nextString();
+                    } else if (name.equals("keywordFilter")) {
+                        targetKeywordFilter = reader.nextString();
+                    } else if (name.equals("appFilter")) {
+                        targetAppFilter = reader.nextString();
+                    } else if (name.equals("excludeFilter")) {
+                        excludeFilter = reader.nextString();
+                    } else if (name.equals("embedding_features")) {
+                        embeddingFeatures = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                ensureCapacity(mSize + 1);
+                int ad = mSize;
+                if (mRequireEmbedding
+                        && (embeddingFeatures == null
+                                || !parseEmbedding(
+                                        embeddingFeatures, mEmbeddings, ad * EMBEDDING_SIZE))) {
+                    Log.w(TAG, "Ad " + id + " does not have exactly " + EMBEDDING_SIZE
+                            + " embedding values.");
+                    return false;
+                }
+                int keywordFilter = internFilter(targetKeywordFilter);
+                int appFilter = internFilter(targetAppFilter);
+                int excludeFilterOrdinal = internFilter(excludeFilter);
+                mIds[ad] = id;
+                mMaxCpc[ad] = maxCpcPrice;
+                mLandingPages[ad] = landingPage;
+                mTexts[ad] = text;
+                mKeywords[ad] = internTermSet(targetKeywordIds, targetKeywords);
+                mApps[ad] = internTermSet(targetAppIds, targetApps);
+                mExcludes[ad] = internTermSet(excludeIds, excludes);
+                mKeywordFilters[ad] = keywordFilter;
+                mAppFilters[ad] = appFilter;
+                mExcludeFilters[ad] = excludeFilterOrdinal;
+                mTemplates[ad] = internTemplate(templateId);
+                mSize++;
+                return true;
+            } catch (Exception e) {
+                Log.e(TAG, "Parsing ad " + id + " failed.", e);
+                return false;
+            }
+        }
+
+        /**
+         * Appends the ads of {@code other}, which must have been created with the same
+         * dictionary, after those of this builder. Spelled out terms, targeting lists, filters
+         * and template ids are interned again, so the result is the same as adding every ad to
+         * this builder.
+         */
+        void addAll(Builder other) {
+            if (other.mDictionarySize != mDictionarySize) {
+                throw new IllegalArgumentException("Builders have different dictionaries.");
+            }
+            // Spelled out terms get ids from here on, in the order they were first added.
+            int firstTermId = Math.max(0, mDictionarySize);
+            String[] otherTerms = new String[other.mNextTermId - firstTermId];
+            for (Map.Entry<String, Integer> term : other.mTermIds.entrySet()) {
+                if (term.getValue() >= firstTermId) {
+                    otherTerms[term.getValue() - firstTermId] = term.getKey();
+                }
+            }
+            int[] termIds = new int[otherTerms.length];
+            for (int i = 0; i < otherTerms.length; i++) {
+                termIds[i] = internTerm(otherTerms[i]);
+            }
+            int[] termSets = new int[other.mTermSets.size()];
+            for (int i = 0; i < termSets.length; i++) {
+                termSets[i] = internIds(remapIds(other.mTermSets.get(i), firstTermId, termIds));
+            }
+            String[] otherFilters = new String[other.mFilters.size()];
+            for (Map.Entry<String, Integer> filter : other.mFilterOrdinals.entrySet()) {
+                otherFilters[filter.getValue()] = filter.getKey();
+            }
+            int[] filters = new int[otherFilters.length];
+            for (int i = 0; i < filters.length; i++) {
+                Integer ordinal = mFilterOrdinals.get(otherFilters[i]);
+                if (ordinal == null) {
+                    ordinal = mFilters.size();
+                    mFilters.add(other.mFilters.get(i));
+                    mFilterOrdinals.put(otherFilters[i], ordinal);
+                }
+                filters[i] = ordinal;
+            }
+            int[] templates = new int[other.mTemplateIds.size()];
+            for (int i = 0; i < templates.length; i++) {
+                templates[i] = internTemplate(other.mTemplateIds.get(i));
+            }
+
+            int n = other.mSize;
+            ensureCapacity(mSize + n);
+            System.arraycopy(other.mIds, 0, mIds, mSize, n);
+            System.arraycopy(other.mMaxCpc, 0, mMaxCpc, mSize, n);
+            System.arraycopy(
+                    other.mEmbeddings,
+                    0,
+                    mEmbeddings,
+                    mSize * EMBEDDING_SIZE,
+                    n * EMBEDDING_SIZE);
+            System.arraycopy(other.mLandingPages, 0, mLandingPages, mSize, n);
+            System.arraycopy(other.mTexts, 0, mTexts, mSize, n);
+            for (int i = 0; i < n; i++) {
+                int ad = mSize + i;
+                mKeywords[ad] = remapOrdinal(other.mKeywords[i], termSets);
+                mApps[ad] = remapOrdinal(other.mApps[i], termSets);
+                mExcludes[ad] = remapOrdinal(other.mExcludes[i], termSets);
+                mKeywordFilters[ad] = remapOrdinal(other.mKeywordFilters[i], filters);
+                mAppFilters[ad] = remapOrdinal(other.mAppFilters[i], filters);
+                mExcludeFilters[ad] = remapOrdinal(other.mExcludeFilters[i], filters);
+                mTemplates[ad] = remapOrdinal(other.mTemplates[i], templates);
+            }
+            mSize += n;
+        }
+
+        AdCatalog build(long version, long loadedAtMillis) {
+            return new AdCatalog(this, version, loadedAtMillis);
+        }
+
+        /** Interns the union of a sorted id list and a list of spelled out terms. */
+        private int internTermSet(int[] ids, List<String> terms) {
+            if (ids.length == 0 && terms.isEmpty()) {
+                return NONE;
+            }
+            if (!terms.isEmpty()) {
+                int[] merged = Arrays.copyOf(ids, ids.length + terms.size());
+                for (int i = 0; i < terms.size(); i++) {
+                    merged[ids.length + i] = internTerm(terms.get(i));
+                }
+                ids = TermDictionary.sortedDistinct(merged, merged.length);
+            }
+            return internIds(ids);
+        }
+
+        private int internIds(int[] ids) {
+            TermSetKey key = new TermSetKey(ids);
+            Integer ordinal = mTermSetOrdinals.get(key);
+            if (ordinal == null) {
+                ordinal = mTermSets.size();
+                mTermSets.add(ids);
+                mTermSetOrdinals.put(key, ordinal);
+            }
+            return ordinal;
+        }
+
+        private int internTerm(String term) {
+            Integer id = mTermIds.get(term);
+            if (id == null) {
+                id = mNextTermId++;
+                mTermIds.put(term, id);
+            }
+            return id;
+        }
+
+        /**
+         * Returns {@code ids} with the spelled out term ids of another builder, those from
+         * {@code firstTermId} on, replaced by {@code termIds}, sorted again.
+         */
+        private static int[] remapIds(int[] ids, int firstTermId, int[] termIds) {
+            int[] remapped = null;
+            for (int i = 0; i < ids.length; i++) {
+                int index = ids[i] - firstTermId;
+                if (index >= 0 && index < termIds.length) {
+                    if (remapped == null) {
+                        remapped = ids.clone();
+                    }
+                    remapped[i] = termIds[index];
+                }
+            }
+            return remapped == null
+                    ? ids
+                    : TermDictionary.sortedDistinct(remapped, remapped.length);
+        }
+
+        private static int remapOrdinal(int ordinal, int[] ordinals) {
+            return ordinal == NONE ? NONE : ordinals[ordinal];
+        }
+
+        private int internFilter(String serializedFilterBase64) {
+            if (serializedFilterBase64 == null) {
+                return NONE;
+            }
+            Integer ordinal = mFilterOrdinals.get(serializedFilterBase64);
+            if (ordinal == null) {
+                ordinal = mFilters.size();
+                mFilters.add(CuckooFilterUtil.createCuckooFilter(serializedFilterBase64));
+                mFilterOrdinals.put(serializedFilterBase64, ordinal);
+            }
+            return ordinal;
+        }
+
+        private int internTemplate(String templateId) {
+            if (templateId == null) {
+                return NONE;
+            }
+            Integer ordinal = mTemplateOrdinals.get(templateId);
+            if (ordinal == null) {
+                ordinal = mTemplateIds.size();
+                mTemplateIds.add(templateId);
+                mTemplateOrdinals.put(templateId, ordinal);
+            }
+            return ordinal;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= mIds.length) {
+                return;
+            }
+            int capacity = Math.max(size, mIds.length * 2);
+            mIds = Arrays.copyOf(mIds, capacity);
+            mMaxCpc = Arrays.copyOf(mMaxCpc, capacity);
+            mEmbeddings = Arrays.copyOf(mEmbeddings, capacity * EMBEDDING_SIZE);
+            mLandingPages = Arrays.copyOf(mLandingPages, capacity);
+            mTexts = Arrays.copyOf(mTexts, capacity);
+            mKeywords = Arrays.copyOf(mKeywords, capacity);
+            mApps = Arrays.copyOf(mApps, capacity);
+            mExcludes = Arrays.copyOf(mExcludes, capacity);
+            mKeywordFilters = Arrays.copyOf(mKeywordFilters, capacity);
+            mAppFilters = Arrays.copyOf(mAppFilters, capacity);
+            mExcludeFilters = Arrays.copyOf(mExcludeFilters, capacity);
+            mTemplates = Arrays.copyOf(mTemplates, capacity);
+        }
+
+        /**
+         * Parses exactly EMBEDDING_SIZE comma separated floats into {@code dest}. Returns false
+         * if there are fewer or more values.
+         */
+        private static boolean parseEmbedding(String value, float[] dest, int offset) {
+            int start = 0;
+            for (int i = 0; i < EMBEDDING_SIZE; i++) {
+                int end = value.indexOf(',', start);
+                if ((end < 0) != (i == EMBEDDING_SIZE - 1)) {
+                    return false;
+                }
+                if (end < 0) {
+                    end = value.length();
+                }
+                dest[offset + i] = Float.parseFloat(value.substring(start, end));
+                start = end + 1;
+            }
+            return true;
+        }
+
+        /** Compares interned term sets by content. */
+        private static final class TermSetKey {
+            private final int[] mIds;
+            private final int mHash;
+
+            TermSetKey(int[] ids) {
+                mIds = ids;
+                mHash = Arrays.hashCode(ids);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof TermSetKey && Arrays.equals(mIds, ((TermSetKey) o).mIds);
+            }
+
+            @Override
+            public int hashCode() {
+                return mHash;
+            }
+        }
+
+        private static void readJsonArray(JsonReader reader, List<String> values)
+                throws IOException {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                String value = reader.nextString();
+                if (value != null && !value.isEmpty()) {
+                    values.add(value);
+                }
+            }
+            reader.endArray();
+        }
+    }
+}
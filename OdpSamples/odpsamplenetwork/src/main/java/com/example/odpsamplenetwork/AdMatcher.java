@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.AppInfo;
+import android.adservices.ondevicepersonalization.UserData;
+
+import com.google.setfilters.cuckoofilter.CuckooFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the ads of an {@link AdCatalog} against one request.
+ *
+ * <p>A request carries one or more context terms. An ad's {@code keywords} and
+ * {@code keywordFilter} must contain any one of the terms, or every term when matching all
+ * terms, and an ad is excluded if its {@code excludes} or {@code excludeFilter} contains any
+ * term. With a single term both modes reduce to the original single keyword match.
+ *
+ * <p>The request terms and the user's apps are looked up in the catalog's term ids once, so
+ * checking a targeting list is an intersection of sorted ids. Every check on a targeting list
+ * or filter depends only on the request, so its outcome is computed the first time an ad
+ * refers to that list or filter and reused, by ordinal, for every other ad that shares it.
+ */
+final class AdMatcher {
+    private static final byte UNKNOWN = 0;
+    private static final byte YES = 1;
+    private static final byte NO = 2;
+
+    private final AdCatalog mCatalog;
+    private final String[] mTerms;
+    private final boolean mMatchAllTerms;
+    // Sorted ids of the request terms that any targeting list contains.
+    private final int[] mTermIds;
+    // False if some term is in no targeting list, so that no list contains every term.
+    private final boolean mAllTermsHaveIds;
+    // Targeting lists are matched against every app in the user data, filters only against
+    // installed ones.
+    private final int[] mAppIds;
+    private final List<String> mInstalledApps;
+
+    private final byte[] mTermSetTargeted;
+    private final byte[] mTermSetHasAnyTerm;
+    private final byte[] mTermSetHasApp;
+    private final byte[] mFilterTargeted;
+    private final byte[] mFilterHasAnyTerm;
+    private final byte[] mFilterHasInstalledApp;
+
+    /**
+     * @param terms normalized, non-empty request terms
+     * @param matchAllTerms whether targeting lists must contain every term rather than any
+     */
+    AdMatcher(AdCatalog catalog, UserData userData, String[] terms, boolean matchAllTerms) {
+        mCatalog = catalog;
+        mTerms = terms;
+        // With one term "all" and "any" agree, so both checks can share one memo.
+        mMatchAllTerms = matchAllTerms && terms.length > 1;
+        mTermIds = termIds(catalog, Arrays.asList(terms));
+        mAllTermsHaveIds = mTermIds.length == terms.length;
+        Map<String, AppInfo> appInfos = userData == null ? null : userData.getAppInfos();
+        if (appInfos == null || appInfos.isEmpty()) {
+            mAppIds = new int[0];
+            mInstalledApps = Collections.emptyList();
+        } else {
+            mAppIds = termIds(catalog, appInfos.keySet());
+            mInstalledApps = new ArrayList<>();
+            for (Map.Entry<String, AppInfo> app : appInfos.entrySet()) {
+                if (app.getValue() != null && app.getValue().isInstalled()) {
+                    mInstalledApps.add(app.getKey());
+                }
+            }
+        }
+        mTermSetHasAnyTerm = new byte[catalog.mTermSets.length];
+        mTermSetTargeted =
+                mMatchAllTerms ? new byte[catalog.mTermSets.length] : mTermSetHasAnyTerm;
+        mTermSetHasApp = new byte[catalog.mTermSets.length];
+        mFilterHasAnyTerm = new byte[catalog.mFilters.length];
+        mFilterTargeted = mMatchAllTerms ? new byte[catalog.mFilters.length] : mFilterHasAnyTerm;
+        mFilterHasInstalledApp = new byte[catalog.mFilters.length];
+    }
+
+    /** Returns the ordinals of all matching ads in catalog order. */
+    int[] matchAll() {
+        int[] matched = new int[mCatalog.mSize];
+        int count = 0;
+        for (int ad = 0; ad < mCatalog.mSize; ad++) {
+            if (matches(ad)) {
+                matched[count++] = ad;
+            }
+        }
+        return count == matched.length ? matched : Arrays.copyOf(matched, count);
+    }
+
+    boolean matches(int ad) {
+        AdCatalog c = mCatalog;
+        int keywords = c.mKeywords[ad];
+        if (keywords != AdCatalog.NONE && !termSetTargeted(keywords)) {
+            return false;
+        }
+        int apps = c.mApps[ad];
+        if (apps != AdCatalog.NONE && !termSetHasApp(apps)) {
+            return false;
+        }
+        int excludes = c.mExcludes[ad];
+        if (excludes != AdCatalog.NONE
+                && (termSetHasAnyTerm(excludes) || termSetHasApp(excludes))) {
+            return false;
+        }
+        int keywordFilter = c.mKeywordFilters[ad];
+        if (keywordFilter != AdCatalog.NONE && !filterTargeted(keywordFilter)) {
+            return false;
+        }
+        int excludeFilter = c.mExcludeFilters[ad];
+        if (excludeFilter != AdCatalog.NONE
+                && (filterHasAnyTerm(excludeFilter) || filterHasInstalledApp(excludeFilter))) {
+            return false;
+        }
+        int appFilter = c.mAppFilters[ad];
+        return appFilter == AdCatalog.NONE || filterHasInstalledApp(appFilter);
+    }
+
+    private boolean termSetTargeted(int ordinal) {
+        if (!mMatchAllTerms) {
+            return termSetHasAnyTerm(ordinal);
+        }
+        if (mTermSetTargeted[ordinal] == UNKNOWN) {
+            mTermSetTargeted[ordinal] =
+                    mAllTermsHaveIds
+                                    && TermDictionary.containsAll(
+                                            mCatalog.mTermSets[ordinal], mTermIds)
+                            ? YES
+                            : NO;
+        }
+        return mTermSetTargeted[ordinal] == YES;
+    }
+
+    private boolean termSetHasAnyTerm(int ordinal) {
+        if (mTermSetHasAnyTerm[ordinal] == UNKNOWN) {
+            mTermSetHasAnyTerm[ordinal] =
+                    TermDictionary.intersects(mCatalog.mTermSets[ordinal], mTermIds) ? YES : NO;
+        }
+        return mTermSetHasAnyTerm[ordinal] == YES;
+    }
+
+    private boolean termSetHasApp(int ordinal) {
+        if (mTermSetHasApp[ordinal] == UNKNOWN) {
+            mTermSetHasApp[ordinal] =
+                    TermDictionary.intersects(mCatalog.mTermSets[ordinal], mAppIds) ? YES : NO;
+        }
+        return mTermSetHasApp[ordinal] == YES;
+    }
+
+    private boolean filterTargeted(int ordinal) {
+        if (!mMatchAllTerms) {
+            return filterHasAnyTerm(ordinal);
+        }
+        if (mFilterTargeted[ordinal] == UNKNOWN) {
+            mFilterTargeted[ordinal] = containsAll(mCatalog.mFilters[ordinal], mTerms) ? YES : NO;
+        }
+        return mFilterTargeted[ordinal] == YES;
+    }
+
+    private boolean filterHasAnyTerm(int ordinal) {
+        if (mFilterHasAnyTerm[ordinal] == UNKNOWN) {
+            mFilterHasAnyTerm[ordinal] =
+                    containsAny(mCatalog.mFilters[ordinal], Arrays.asList(mTerms)) ? YES : NO;
+        }
+        return mFilterHasAnyTerm[ordinal] == YES;
+    }
+
+    private boolean filterHasInstalledApp(int ordinal) {
+        if (mFilterHasInstalledApp[ordinal] == UNKNOWN) {
+            mFilterHasInstalledApp[ordinal] =
+                    containsAny(mCatalog.mFilters[ordinal], mInstalledApps) ? YES : NO;
+        }
+        return mFilterHasInstalledApp[ordinal] == YES;
+    }
+
+    /** Returns the sorted, distinct ids of those of {@code terms} that have one. */
+    private static int[] termIds(AdCatalog catalog, Collection<String> terms) {
+        int[] ids = new int[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            int id = catalog.getTermId(term);
+            if (id != AdCatalog.NONE) {
+                ids[count++] = id;
+            }
+        }
+        return TermDictionary.sortedDistinct(ids, count);
+    }
+
+    private static boolean containsAll(CuckooFilter<String> filter, String[] values) {
+        for (String value : values) {
+            if (!filter.contains(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsAny(CuckooFilter<String> filter, List<String> values) {
+        for (String value : values) {
+            if (filter.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.EventLogRecord;
+import android.adservices.ondevicepersonalization.LogReader;
+import android.content.ContentValues;
+
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Maps the value of one request log column (e.g. the ad id) to the most recent joined event
+ * whose request row carries that value. A lookup costs O(1) plus the events that arrived since
+ * the cursor last advanced.
+ */
+class AttributionIndex extends JoinedEventIndex {
+    private final String mKeyColumn;
+    private final HashMap<String, EventLogRecord> mLatest = new HashMap<>();
+    // The keys of mLatest ordered by the time of their event, so expiry pops from the head even
+    // when the cursor's sync overlap folds in events older than ones already indexed.
+    private final TreeSet<TimedKey> mByTime = new TreeSet<>();
+
+    AttributionIndex(JoinedEventCursor cursor, String keyColumn) {
+        super(cursor);
+        mKeyColumn = keyColumn;
+    }
+
+    /** Returns the most recent event within the window for {@code key}, or null. */
+    EventLogRecord find(LogReader logReader, String key, long nowMillis) {
+        sync(logReader, nowMillis);
+        synchronized (this) {
+            EventLogRecord found = mLatest.get(key);
+            return isInWindow(found, nowMillis) ? found : null;
+        }
+    }
+
+    /** Returns the number of keys currently indexed. */
+    synchronized int size() {
+        return mLatest.size();
+    }
+
+    @Override
+    protected void add(EventLogRecord ev) {
+        ContentValues row = getRow(ev);
+        String key = row == null ? null : row.getAsString(mKeyColumn);
+        if (key == null) {
+            return;
+        }
+        EventLogRecord current = mLatest.get(key);
+        if (isNewer(ev, current)) {
+            if (current != null) {
+                mByTime.remove(new TimedKey(current.getTime().toEpochMilli(), key));
+            }
+            mLatest.put(key, ev);
+            mByTime.add(new TimedKey(ev.getTime().toEpochMilli(), key));
+        }
+    }
+
+    @Override
+    protected void expire(long windowStartMillis) {
+        while (!mByTime.isEmpty() && mByTime.first().mTimeMillis < windowStartMillis) {
+            mLatest.remove(mByTime.pollFirst().mKey);
+        }
+    }
+
+    @Override
+    protected void clearEntries() {
+        mLatest.clear();
+        mByTime.clear();
+    }
+
+    private static final class TimedKey implements Comparable<TimedKey> {
+        final long mTimeMillis;
+        final String mKey;
+
+        TimedKey(long timeMillis, String key) {
+            mTimeMillis = timeMillis;
+            mKey = key;
+        }
+
+        @Override
+        public int compareTo(TimedKey other) {
+            int byTime = Long.compare(mTimeMillis, other.mTimeMillis);
+            return byTime != 0 ? byTime : mKey.compareTo(other.mKey);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the auction results of recent execute requests, so that a repeated request skips
+ * matching, inference and the auction.
+ *
+ * <p>Entries are keyed by {@link ExecuteKey}, so a new catalog version or a change in the user's
+ * apps never hits an older result. Each entry expires after the time to live given when it was
+ * stored. The cache holds a bounded number of entries and drops the oldest first, and an entry
+ * is dropped early once an event is logged for one of its winners.
+ */
+final class AuctionCache {
+    private final int mMaxEntries;
+    // Insertion ordered, so the head is the oldest entry.
+    private final LinkedHashMap<ExecuteKey, Entry> mEntries = new LinkedHashMap<>();
+
+    AuctionCache(int maxEntries) {
+        mMaxEntries = maxEntries;
+    }
+
+    /** Stores the result of an auction for {@code slots} slots until {@code expiresAtMillis}. */
+    synchronized void put(
+            ExecuteKey key,
+            int slots,
+            SampleHandler.AuctionResult result,
+            long expiresAtMillis,
+            long nowMillis) {
+        mEntries.remove(key);
+        mEntries.put(key, new Entry(slots, result, expiresAtMillis));
+        CacheEviction.evictOldest(mEntries, mMaxEntries, e -> e.mExpiresAtMillis, nowMillis);
+    }
+
+    /**
+     * Returns the unexpired result for {@code key} with {@code slots} slots, or null. A result
+     * stored for more slots also serves fewer, since the auction fills slots best first.
+     */
+    synchronized SampleHandler.AuctionResult get(ExecuteKey key, int slots, long nowMillis) {
+        Entry entry = mEntries.get(key);
+        if (entry != null && entry.mExpiresAtMillis <= nowMillis) {
+            mEntries.remove(key);
+            entry = null;
+        }
+        boolean hit = entry != null && entry.mSlots >= slots;
+        Metrics.increment(
+                hit ? Metrics.COUNTER_AUCTION_CACHE_HITS : Metrics.COUNTER_AUCTION_CACHE_MISSES, 1);
+        return hit ? entry.mResult.firstSlots(slots) : null;
+    }
+
+    /** Drops every result in which ad {@code id} won a slot. */
+    synchronized void invalidateAd(String id) {
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().mResult.hasWinner(id)) {
+                it.remove();
+                Metrics.increment(Metrics.COUNTER_AUCTION_CACHE_INVALIDATIONS, 1);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+
+    private static final class Entry {
+        final int mSlots;
+        final SampleHandler.AuctionResult mResult;
+        final long mExpiresAtMillis;
+
+        Entry(int slots, SampleHandler.AuctionResult result, long expiresAtMillis) {
+            mSlots = slots;
+            mResult = result;
+            mExpiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpsamplenetwork;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.ToLongFunction;
+
+/** Eviction shared by the insertion ordered caches of recent results. */
+final class CacheEviction {
+
+    /**
+     * Drops entries from the head of {@code entries}, oldest first, while there are more than
+     * {@code maxEntries} or the head has expired by {@code nowMillis}.
+     */
+    static <V> void evictOldest(
+            LinkedHashMap<?, V> entries,
+            int maxEntries,
+            ToLongFunction<? super V> expiresAtMillis,
+            long nowMillis) {
+        Iterator<V> it = entries.values().iterator();
+        while (it.hasNext()) {
+            V eldest = it.next();
+            if (entries.size() <= maxEntries && expiresAtMillis.applyAsLong(eldest) > nowMillis) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private CacheEviction() {
+    }
+}
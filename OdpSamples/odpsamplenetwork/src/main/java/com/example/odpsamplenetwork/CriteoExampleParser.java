@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+/**
+ * Converts a Criteo CSV row (label, 13 integer features, 26 categorical features) into a
+ * serialized {@code tf.Example} in a single pass over the raw UTF-8 bytes.
+ *
+ * <p>Feature names are encoded once, integers are parsed in place without substrings, and
+ * categorical values are copied straight from the row into the output by {@link ExampleWriter}.
+ */
+final class CriteoExampleParser {
+    static final int NUM_INT_FEATURES = 13;
+    static final int NUM_CATEGORICAL_FEATURES = 26;
+    static final int NUM_COLUMNS = 1 + NUM_INT_FEATURES + NUM_CATEGORICAL_FEATURES;
+
+    private static final byte[][] FEATURE_NAMES = new byte[NUM_COLUMNS][];
+
+    static {
+        FEATURE_NAMES[0] = ExampleWriter.name("clicked");
+        for (int i = 1; i < NUM_COLUMNS; i++) {
+            FEATURE_NAMES[i] =
+                    ExampleWriter.name(
+                            (i <= NUM_INT_FEATURES ? "int-feature-" : "categorical-feature-") + i);
+        }
+    }
+
+    /**
+     * Parses one CSV row and returns the serialized example. Missing integers become 0, as in
+     * the original string-based parser.
+     */
+    static byte[] serialize(byte[] row) {
+        ExampleWriter writer = ExampleWriter.get();
+        int column = 0;
+        int start = 0;
+        int length = row.length;
+        for (int i = 0; i <= length && column < NUM_COLUMNS; i++) {
+            if (i < length && row[i] != ',') {
+                continue;
+            }
+            if (column <= NUM_INT_FEATURES) {
+                writer.addInt64(FEATURE_NAMES[column], parseLong(row, start, i));
+            } else {
+                writer.addBytes(FEATURE_NAMES[column], row, start, i - start);
+            }
+            column++;
+            start = i + 1;
+        }
+        if (column < NUM_COLUMNS) {
+            throw new IllegalArgumentException(
+                    "Criteo example has " + column + " columns, expected " + NUM_COLUMNS);
+        }
+        return writer.toByteArray();
+    }
+
+    /** Parses a decimal long from {@code row[start, end)}; an empty range is 0. */
+    static long parseLong(byte[] row, int start, int end) {
+        if (start == end) {
+            return 0L;
+        }
+        boolean negative = row[start] == '-';
+        int i = (negative || row[start] == '+') ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException("Invalid integer feature");
+        }
+        // Accumulate negatively so that Long.MIN_VALUE parses without overflow.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = row[i] - '0';
+            if (digit < 0 || digit > 9 || result < (limit + digit) / 10) {
+                throw new NumberFormatException("Invalid integer feature");
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private CriteoExampleParser() {
+    }
+}
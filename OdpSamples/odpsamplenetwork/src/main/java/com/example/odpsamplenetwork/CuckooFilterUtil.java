@@ -18,11 +18,9 @@ package com.example.odpsamplenetwork;
 
 import android.util.Base64;
 
+import com.example.filtercodec.FilterCodec;
 import com.google.common.hash.Funnels;
 import com.google.setfilters.cuckoofilter.CuckooFilter;
-import com.google.setfilters.cuckoofilter.CuckooFilterHashFunctions;
-import com.google.setfilters.cuckoofilter.CuckooFilterStrategies;
-import com.google.setfilters.cuckoofilter.SerializedCuckooFilterTable;
 
 import java.nio.charset.StandardCharsets;
 
@@ -31,10 +29,9 @@ class CuckooFilterUtil {
     static CuckooFilter<String> createCuckooFilter(String serializedFilterBase64) {
         byte[] serializedFilter = Base64.decode(serializedFilterBase64, 0);
 
-        CuckooFilter<String> result = CuckooFilter.createFromSerializedTable(
-                SerializedCuckooFilterTable.createFromByteArray(serializedFilter),
-                CuckooFilterHashFunctions.MURMUR3_128,
-                CuckooFilterStrategies.SIMPLE_MOD,
+        // The filter's header names the hash function it was written with.
+        CuckooFilter<String> result = FilterCodec.decode(
+                serializedFilter,
                 Funnels.stringFunnel(StandardCharsets.UTF_8)
         );
 
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.AppInfo;
+import android.adservices.ondevicepersonalization.KeyValueStore;
+import android.adservices.ondevicepersonalization.UserData;
+import android.util.JsonReader;
+import android.util.Log;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.setfilters.cuckoofilter.CuckooFilter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decides which downloaded keys to retain.
+ *
+ * <p>Templates, examples, models and the term dictionary are kept by key without reading their
+ * values. An ad is dropped when one of its {@code excludes}, its {@code excludeIds} or its
+ * {@code excludeFilter} names an app on the device; only those fields are decoded and every
+ * other field is skipped unparsed. When the user data lists no apps nothing can be excluded,
+ * so ads are kept without being read.
+ */
+final class EligibilityFilter {
+    private static final String TAG = SampleHandler.TAG;
+    private static final int MIN_KEYS_PER_TASK = 64;
+
+    // Exclude lists are matched against every app in the user data and exclude filters only
+    // against installed ones, as in SampleHandler.isInstalledAppFound().
+    private final Set<String> mApps;
+    private final List<String> mInstalledApps;
+
+    EligibilityFilter(UserData userData) {
+        Map<String, AppInfo> appInfos = userData == null ? null : userData.getAppInfos();
+        if (appInfos == null || appInfos.isEmpty()) {
+            mApps = Collections.emptySet();
+            mInstalledApps = Collections.emptyList();
+            return;
+        }
+        mApps = new HashSet<>(appInfos.keySet());
+        mInstalledApps = new ArrayList<>();
+        for (Map.Entry<String, AppInfo> app : appInfos.entrySet()) {
+            if (app.getValue() != null && app.getValue().isInstalled()) {
+                mInstalledApps.add(app.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of {@code data} to retain, in key set order. Contiguous key ranges are
+     * checked in parallel on {@code executor}, which must not be running the caller.
+     */
+    List<String> getRetainedKeys(
+            KeyValueStore data, ListeningExecutorService executor, int parallelism)
+            throws InterruptedException, ExecutionException {
+        int[] appIds = mApps.isEmpty() ? new int[0] : readAppIds(data);
+        List<String> keys = new ArrayList<>(data.keySet());
+        int rangeSize =
+                Math.max(MIN_KEYS_PER_TASK, (keys.size() + parallelism - 1) / parallelism);
+        List<ListenableFuture<List<String>>> ranges = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += rangeSize) {
+            List<String> range = keys.subList(start, Math.min(keys.size(), start + rangeSize));
+            ranges.add(executor.submit(() -> filterRange(data, range, appIds)));
+        }
+        List<String> retained = new ArrayList<>();
+        for (List<String> rangeKeys : Futures.allAsList(ranges).get()) {
+            retained.addAll(rangeKeys);
+        }
+        return retained;
+    }
+
+    /** Returns the sorted term ids of the apps in the user data. */
+    private int[] readAppIds(KeyValueStore data) {
+        try {
+            return TermDictionary.idsOf(TermDictionary.read(data), mApps);
+        } catch (IOException e) {
+            // Ads are still matched against the apps when they are read for an auction.
+            Log.e(TAG, "Reading the term dictionary failed", e);
+            return new int[0];
+        }
+    }
+
+    private List<String> filterRange(KeyValueStore data, List<String> keys, int[] appIds) {
+        List<String> retained = new ArrayList<>();
+        for (String key : keys) {
+            if (key == null) {
+                continue;
+            }
+            if (key.startsWith("ad")) {
+                if (mApps.isEmpty()) {
+                    retained.add(key);
+                    continue;
+                }
+                byte[] value = data.get(key);
+                if (value != null && !isExcluded(key, value, appIds)) {
+                    retained.add(key);
+                }
+            } else if (key.startsWith("template")
+                    || key.startsWith("example")
+                    || key.startsWith("model")
+                    || key.equals(TermDictionary.KEY)) {
+                retained.add(key);
+            }
+        }
+        return retained;
+    }
+
+    /** Returns true if the ad should be dropped, including when its JSON cannot be read. */
+    private boolean isExcluded(String key, byte[] value, int[] appIds) {
+        try (JsonReader reader =
+                new JsonReader(new StringReader(new String(value, StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("excludes")) {
+                    if (containsApp(reader)) {
+                        return true;
+                    }
+                } else if (name.equals("excludeIds")) {
+                    if (TermDictionary.intersects(TermDictionary.readIds(reader, -1), appIds)) {
+                        return true;
+                    }
+                } else if (name.equals("excludeFilter")) {
+                    if (containsInstalledApp(
+                            CuckooFilterUtil.createCuckooFilter(reader.nextString()))) {
+                        return true;
+                    }
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return false;
+        } catch (Exception e) {
+            Log.e(TAG, "isExcluded() failed for " + key, e);
+            return true;
+        }
+    }
+
+    private boolean containsApp(JsonReader reader) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (mApps.contains(reader.nextString())) {
+                return true;
+            }
+        }
+        reader.endArray();
+        return false;
+    }
+
+    private boolean containsInstalledApp(CuckooFilter<String> filter) {
+        for (String app : mInstalledApps) {
+            if (filter.contains(app)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide LRU cache of serialized training examples, bounded by an estimate of the bytes
+ * it retains.
+ *
+ * <p>Entries belong to one catalog version. The first lookup or insert with a newer version
+ * drops everything cached for older ones, and calls still running with an older version miss
+ * and do not insert. The version is bumped when a download starts, before the platform commits
+ * the new data, so a call racing the commit can still cache examples converted from the old
+ * data under the new version. Entries therefore also expire after a maximum age, which bounds
+ * how long such examples are served.
+ */
+final class ExampleCache {
+    // Rough per-entry cost of the map entry, key string and array headers.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long mMaxBytes;
+    private final long mMaxAgeMillis;
+    private final LinkedHashMap<String, Entry> mEntries =
+            new LinkedHashMap<>(/* initialCapacity */ 16, /* loadFactor */ 0.75f,
+                    /* accessOrder */ true);
+    private long mVersion = Long.MIN_VALUE;
+    private long mBytes;
+
+    ExampleCache(long maxBytes, long maxAgeMillis) {
+        mMaxBytes = maxBytes;
+        mMaxAgeMillis = maxAgeMillis;
+    }
+
+    /** Returns the cached example for {@code key} at {@code version}, or null. */
+    synchronized byte[] get(String key, long version, long nowMillis) {
+        Entry entry = isCurrent(version) ? mEntries.get(key) : null;
+        if (entry != null && nowMillis - entry.mInsertedAtMillis >= mMaxAgeMillis) {
+            mEntries.remove(key);
+            mBytes -= cost(key, entry.mExample);
+            entry = null;
+        }
+        byte[] example = entry == null ? null : entry.mExample;
+        Metrics.increment(
+                example != null
+                        ? Metrics.COUNTER_EXAMPLE_CACHE_HITS
+                        : Metrics.COUNTER_EXAMPLE_CACHE_MISSES,
+                1);
+        return example;
+    }
+
+    synchronized void put(String key, long version, byte[] example, long nowMillis) {
+        if (!isCurrent(version) || cost(key, example) > mMaxBytes) {
+            return;
+        }
+        Entry previous = mEntries.put(key, new Entry(example, nowMillis));
+        if (previous != null) {
+            mBytes -= cost(key, previous.mExample);
+        }
+        mBytes += cost(key, example);
+        trimToSize(mMaxBytes);
+    }
+
+    /** Releases memory in response to {@link ComponentCallbacks2#onTrimMemory(int)}. */
+    synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(0);
+        } else {
+            trimToSize(mMaxBytes / 2);
+        }
+    }
+
+    synchronized void clear() {
+        trimToSize(0);
+    }
+
+    synchronized long sizeBytes() {
+        return mBytes;
+    }
+
+    private boolean isCurrent(long version) {
+        if (version > mVersion) {
+            mEntries.clear();
+            mBytes = 0;
+            mVersion = version;
+        }
+        return version == mVersion;
+    }
+
+    private void trimToSize(long maxBytes) {
+        int evicted = 0;
+        Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+        while (mBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            mBytes -= cost(eldest.getKey(), eldest.getValue().mExample);
+            it.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            Metrics.increment(Metrics.COUNTER_EXAMPLE_CACHE_EVICTIONS, evicted);
+        }
+    }
+
+    private static long cost(String key, byte[] example) {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + example.length;
+    }
+
+    private static final class Entry {
+        final byte[] mExample;
+        final long mInsertedAtMillis;
+
+        Entry(byte[] example, long insertedAtMillis) {
+            mExample = example;
+            mInsertedAtMillis = insertedAtMillis;
+        }
+    }
+}
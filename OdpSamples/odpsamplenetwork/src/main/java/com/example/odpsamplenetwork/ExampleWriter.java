@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes the {@code tf.Example} wire format directly from primitive values.
+ *
+ * <p>Features are recorded by reference and serialized by {@link #toByteArray()} into a single
+ * exactly sized array, in insertion order, with packed float and int64 lists. The output is
+ * byte-identical to building the same features with the generated {@code Example} builders and
+ * calling {@code toByteArray()}, without allocating the intermediate message objects.
+ *
+ * <p>A writer is not thread safe; {@link #get()} returns a reset per-thread instance.
+ */
+final class ExampleWriter {
+    // Field numbers of the Feature oneof, which also identify the kind of each feature.
+    private static final int KIND_BYTES = 1;
+    private static final int KIND_FLOAT = 2;
+    private static final int KIND_INT64 = 3;
+
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    // Every field written here is field 1 or 2 of its message, so each tag is one byte.
+    private static final byte TAG_FIELD_1 = (byte) (1 << 3 | WIRETYPE_LENGTH_DELIMITED);
+    private static final byte TAG_FIELD_2 = (byte) (2 << 3 | WIRETYPE_LENGTH_DELIMITED);
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final ThreadLocal<ExampleWriter> sWriter =
+            ThreadLocal.withInitial(ExampleWriter::new);
+
+    private byte[][] mNames = new byte[INITIAL_CAPACITY][];
+    private int[] mKinds = new int[INITIAL_CAPACITY];
+    private long[] mLongs = new long[INITIAL_CAPACITY];
+    private Object[] mArrays = new Object[INITIAL_CAPACITY];
+    private int[] mOffsets = new int[INITIAL_CAPACITY];
+    private int[] mLengths = new int[INITIAL_CAPACITY];
+    // Serialized sizes of each feature's list and Feature message, filled by toByteArray().
+    private int[] mListSizes = new int[INITIAL_CAPACITY];
+    private int[] mFeatureSizes = new int[INITIAL_CAPACITY];
+    private int mCount;
+
+    /** Returns this thread's writer with no features. */
+    static ExampleWriter get() {
+        return sWriter.get().reset();
+    }
+
+    /** Returns the UTF-8 encoding of a feature name, to be computed once per name. */
+    static byte[] name(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    ExampleWriter reset() {
+        // Drop references so the previous example's arrays can be collected.
+        Arrays.fill(mArrays, 0, mCount, null);
+        mCount = 0;
+        return this;
+    }
+
+    /** Adds an int64 list feature holding {@code value}. */
+    ExampleWriter addInt64(byte[] name, long value) {
+        int i = append(name, KIND_INT64);
+        mLongs[i] = value;
+        return this;
+    }
+
+    /** Adds a float list feature holding {@code values[0, count)}, which must not change. */
+    ExampleWriter addFloats(byte[] name, float[] values, int count) {
+        int i = append(name, KIND_FLOAT);
+        mArrays[i] = values;
+        mLengths[i] = count;
+        return this;
+    }
+
+    /** Adds a bytes list feature holding {@code src[offset, offset + length)}. */
+    ExampleWriter addBytes(byte[] name, byte[] src, int offset, int length) {
+        int i = append(name, KIND_BYTES);
+        mArrays[i] = src;
+        mOffsets[i] = offset;
+        mLengths[i] = length;
+        return this;
+    }
+
+    /** Serializes the features added since the last reset. */
+    byte[] toByteArray() {
+        int featuresSize = 0;
+        for (int i = 0; i < mCount; i++) {
+            int listSize = listSize(i);
+            int featureSize = 1 + varintSize(listSize) + listSize;
+            mListSizes[i] = listSize;
+            mFeatureSizes[i] = featureSize;
+            featuresSize += lengthDelimitedSize(entrySize(i));
+        }
+        byte[] out = new byte[lengthDelimitedSize(featuresSize)];
+        int pos = 0;
+        out[pos++] = TAG_FIELD_1; // Example.features
+        pos = writeVarint(out, pos, featuresSize);
+        for (int i = 0; i < mCount; i++) {
+            out[pos++] = TAG_FIELD_1; // Features.feature map entry
+            pos = writeVarint(out, pos, entrySize(i));
+            out[pos++] = TAG_FIELD_1; // Entry key
+            pos = writeVarint(out, pos, mNames[i].length);
+            System.arraycopy(mNames[i], 0, out, pos, mNames[i].length);
+            pos += mNames[i].length;
+            out[pos++] = TAG_FIELD_2; // Entry value
+            pos = writeVarint(out, pos, mFeatureSizes[i]);
+            out[pos++] = (byte) (mKinds[i] << 3 | WIRETYPE_LENGTH_DELIMITED);
+            pos = writeVarint(out, pos, mListSizes[i]);
+            pos = writeList(out, pos, i);
+        }
+        return out;
+    }
+
+    private int append(byte[] name, int kind) {
+        if (mCount == mNames.length) {
+            int capacity = mCount * 2;
+            mNames = Arrays.copyOf(mNames, capacity);
+            mKinds = Arrays.copyOf(mKinds, capacity);
+            mLongs = Arrays.copyOf(mLongs, capacity);
+            mArrays = Arrays.copyOf(mArrays, capacity);
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+            mListSizes = Arrays.copyOf(mListSizes, capacity);
+            mFeatureSizes = Arrays.copyOf(mFeatureSizes, capacity);
+        }
+        mNames[mCount] = name;
+        mKinds[mCount] = kind;
+        return mCount++;
+    }
+
+    /** Size of the map entry message: the key and the Feature value are always written. */
+    private int entrySize(int i) {
+        return lengthDelimitedSize(mNames[i].length) + lengthDelimitedSize(mFeatureSizes[i]);
+    }
+
+    /** Size of the BytesList, FloatList or Int64List message of feature {@code i}. */
+    private int listSize(int i) {
+        switch (mKinds[i]) {
+            case KIND_BYTES:
+                return lengthDelimitedSize(mLengths[i]);
+            case KIND_FLOAT:
+                // An empty packed field is omitted entirely.
+                return mLengths[i] == 0 ? 0 : lengthDelimitedSize(4 * mLengths[i]);
+            default:
+                return lengthDelimitedSize(varintSize(mLongs[i]));
+        }
+    }
+
+    private int writeList(byte[] out, int pos, int i) {
+        switch (mKinds[i]) {
+            case KIND_BYTES:
+                out[pos++] = TAG_FIELD_1;
+                pos = writeVarint(out, pos, mLengths[i]);
+                System.arraycopy((byte[]) mArrays[i], mOffsets[i], out, pos, mLengths[i]);
+                return pos + mLengths[i];
+            case KIND_FLOAT:
+                int count = mLengths[i];
+                if (count == 0) {
+                    return pos;
+                }
+                out[pos++] = TAG_FIELD_1;
+                pos = writeVarint(out, pos, 4 * count);
+                float[] values = (float[]) mArrays[i];
+                for (int j = 0; j < count; j++) {
+                    int bits = Float.floatToRawIntBits(values[j]);
+                    out[pos++] = (byte) bits;
+                    out[pos++] = (byte) (bits >> 8);
+                    out[pos++] = (byte) (bits >> 16);
+                    out[pos++] = (byte) (bits >> 24);
+                }
+                return pos;
+            default:
+                out[pos++] = TAG_FIELD_1;
+                pos = writeVarint(out, pos, varintSize(mLongs[i]));
+                return writeVarint(out, pos, mLongs[i]);
+        }
+    }
+
+    /** Size of a one-byte tag, a length prefix and {@code length} bytes of payload. */
+    private static int lengthDelimitedSize(int length) {
+        return 1 + varintSize(length) + length;
+    }
+
+    private static int varintSize(long value) {
+        // Each byte carries 7 bits; zero still takes one byte.
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private ExampleWriter() {
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.AppInfo;
+import android.adservices.ondevicepersonalization.UserData;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Identifies the execute requests that match and score the same ads: the normalized request
+ * terms and match mode, the apps in the user data with their installed state, and the catalog
+ * version.
+ */
+final class ExecuteKey {
+    private static final HashFunction APP_HASH = Hashing.murmur3_128();
+    private static final HashCode NO_APPS = HashCode.fromLong(0L);
+
+    private final String[] mTerms;
+    private final boolean mMatchAllTerms;
+    private final HashCode mAppFingerprint;
+    private final long mCatalogVersion;
+    private final int mHashCode;
+
+    ExecuteKey(
+            String[] terms, boolean matchAllTerms, HashCode appFingerprint, long catalogVersion) {
+        mTerms = terms;
+        mMatchAllTerms = matchAllTerms;
+        mAppFingerprint = appFingerprint;
+        mCatalogVersion = catalogVersion;
+        mHashCode =
+                31 * (31 * (31 * Arrays.hashCode(terms) + Boolean.hashCode(matchAllTerms))
+                                + appFingerprint.hashCode())
+                        + Long.hashCode(catalogVersion);
+    }
+
+    /**
+     * Returns a fingerprint of the apps in {@code userData} and whether each is installed, which
+     * does not depend on the order the apps are listed in.
+     */
+    static HashCode fingerprintApps(UserData userData) {
+        Map<String, AppInfo> appInfos = userData == null ? null : userData.getAppInfos();
+        if (appInfos == null || appInfos.isEmpty()) {
+            return NO_APPS;
+        }
+        List<HashCode> apps = new ArrayList<>(appInfos.size());
+        for (Map.Entry<String, AppInfo> app : appInfos.entrySet()) {
+            if (app.getKey() == null) {
+                continue;
+            }
+            boolean installed = app.getValue() != null && app.getValue().isInstalled();
+            apps.add(
+                    APP_HASH.newHasher()
+                            .putString(app.getKey(), StandardCharsets.UTF_8)
+                            .putBoolean(installed)
+                            .hash());
+        }
+        return apps.isEmpty() ? NO_APPS : Hashing.combineUnordered(apps);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ExecuteKey)) {
+            return false;
+        }
+        ExecuteKey other = (ExecuteKey) o;
+        return mHashCode == other.mHashCode
+                && mMatchAllTerms == other.mMatchAllTerms
+                && mCatalogVersion == other.mCatalogVersion
+                && Arrays.equals(mTerms, other.mTerms)
+                && mAppFingerprint.equals(other.mAppFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHashCode;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.EventLogRecord;
+import android.adservices.ondevicepersonalization.LogReader;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A process-wide cursor over {@link LogReader#getJoinedEvents} that remembers the high-water
+ * mark already read.
+ *
+ * <p>Each {@link #advance} fetches only the events logged since the previous call, folds them
+ * into every registered {@link JoinedEventIndex} and lets the indexes drop whatever has left the
+ * window, so the work per call is proportional to the new events rather than to the whole
+ * window. Locks are always taken cursor first, then index.
+ */
+class JoinedEventCursor {
+    // Re-read a little before the high-water mark so events written late are not missed.
+    // Folding is idempotent, so the overlap never double counts.
+    private static final long SYNC_OVERLAP_MILLIS = 60 * 1000;
+
+    private final long mWindowMillis;
+    private final CopyOnWriteArrayList<JoinedEventIndex> mIndexes = new CopyOnWriteArrayList<>();
+    private long mSyncedUntilMillis = Long.MIN_VALUE;
+
+    JoinedEventCursor(long windowMillis) {
+        mWindowMillis = windowMillis;
+    }
+
+    long getWindowMillis() {
+        return mWindowMillis;
+    }
+
+    void register(JoinedEventIndex index) {
+        mIndexes.add(index);
+    }
+
+    /** Folds events newer than the high-water mark into all indexes and expires old entries. */
+    synchronized void advance(LogReader logReader, long nowMillis) {
+        long windowStart = nowMillis - mWindowMillis;
+        long from =
+                mSyncedUntilMillis == Long.MIN_VALUE
+                        ? windowStart
+                        : Math.max(windowStart, mSyncedUntilMillis - SYNC_OVERLAP_MILLIS);
+        List<EventLogRecord> events = null;
+        if (from < nowMillis) {
+            events =
+                    logReader.getJoinedEvents(
+                            Instant.ofEpochMilli(from), Instant.ofEpochMilli(nowMillis));
+            mSyncedUntilMillis = Math.max(mSyncedUntilMillis, nowMillis);
+            Metrics.increment(
+                    Metrics.COUNTER_JOINED_EVENTS_READ, events == null ? 0 : events.size());
+        }
+        for (JoinedEventIndex index : mIndexes) {
+            synchronized (index) {
+                if (events != null) {
+                    for (EventLogRecord ev : events) {
+                        if (ev.getTime() != null) {
+                            index.add(ev);
+                        }
+                    }
+                }
+                index.expire(windowStart);
+            }
+        }
+    }
+
+    /** Forgets the high-water mark and clears every index. */
+    synchronized void reset() {
+        mSyncedUntilMillis = Long.MIN_VALUE;
+        for (JoinedEventIndex index : mIndexes) {
+            synchronized (index) {
+                index.clearEntries();
+            }
+        }
+    }
+}
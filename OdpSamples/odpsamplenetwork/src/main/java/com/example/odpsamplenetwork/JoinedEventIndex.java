@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.EventLogRecord;
+import android.adservices.ondevicepersonalization.LogReader;
+import android.adservices.ondevicepersonalization.RequestLogRecord;
+import android.content.ContentValues;
+
+/**
+ * Base class for in-memory aggregates over joined events that are fed by a shared
+ * {@link JoinedEventCursor}. Subclasses are called with the index lock held.
+ */
+abstract class JoinedEventIndex {
+    protected final JoinedEventCursor mCursor;
+
+    JoinedEventIndex(JoinedEventCursor cursor) {
+        mCursor = cursor;
+        cursor.register(this);
+    }
+
+    /** Folds a newly read event into the index. */
+    protected abstract void add(EventLogRecord ev);
+
+    /** Drops entries whose latest event is older than {@code windowStartMillis}. */
+    protected abstract void expire(long windowStartMillis);
+
+    protected abstract void clearEntries();
+
+    /**
+     * Brings the shared cursor up to {@code nowMillis}. Must be called without holding the index
+     * lock, since the cursor locks every index it feeds.
+     */
+    protected void sync(LogReader logReader, long nowMillis) {
+        mCursor.advance(logReader, nowMillis);
+    }
+
+    protected boolean isInWindow(EventLogRecord ev, long nowMillis) {
+        return ev != null
+                && ev.getTime().toEpochMilli() >= nowMillis - mCursor.getWindowMillis();
+    }
+
+    protected static boolean isNewer(EventLogRecord candidate, EventLogRecord current) {
+        return current == null || current.getTime().compareTo(candidate.getTime()) < 0;
+    }
+
+    /** Returns the request log row an event refers to, or null if it is missing. */
+    protected static ContentValues getRow(EventLogRecord ev) {
+        RequestLogRecord req = ev.getRequestLogRecord();
+        if (req == null
+                || req.getRows() == null
+                || req.getRows().size() <= ev.getRowIndex()
+                || req.getRows().get(ev.getRowIndex()) == null) {
+            return null;
+        }
+        return req.getRows().get(ev.getRowIndex());
+    }
+}
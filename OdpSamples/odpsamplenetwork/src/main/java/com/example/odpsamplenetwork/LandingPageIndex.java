@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.EventLogRecord;
+import android.adservices.ondevicepersonalization.LogReader;
+import android.content.ContentValues;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Indexes joined events by the normalized landing page of their request row.
+ *
+ * <p>Landing pages are normalized to scheme, host and path (plus the query unless it is
+ * stripped) and stored in a trie of reversed host labels followed by path segments. Each node
+ * keeps the most recent event whose landing page ends there, and each host node also keeps the
+ * most recent event for that host, so exact, path-prefix and domain matches are all answered
+ * by a single walk along the destination URL.
+ */
+class LandingPageIndex extends JoinedEventIndex {
+    /** The normalized landing page must equal the normalized destination. */
+    static final int MATCH_EXACT = 0;
+    /** The landing page must be on the same host and a path prefix of the destination. */
+    static final int MATCH_PREFIX = 1;
+    /** The landing page host must equal the destination host or be a parent domain of it. */
+    static final int MATCH_DOMAIN = 2;
+
+    private static final int MIN_DOMAIN_LABELS = 2;
+    private static final long PRUNE_INTERVAL_MILLIS = 10 * 60 * 1000;
+
+    private final String mKeyColumn;
+    private final int mMatchMode;
+    private final boolean mStripQuery;
+    private final HashMap<String, Node> mSchemes = new HashMap<>();
+    private long mLastPruneMillis = Long.MIN_VALUE;
+
+    LandingPageIndex(
+            JoinedEventCursor cursor, String keyColumn, int matchMode, boolean stripQuery) {
+        super(cursor);
+        mKeyColumn = keyColumn;
+        mMatchMode = matchMode;
+        mStripQuery = stripQuery;
+    }
+
+    /** Returns the most recent in-window event whose landing page matches, or null. */
+    EventLogRecord find(LogReader logReader, String destinationUrl, long nowMillis) {
+        sync(logReader, nowMillis);
+        Url url = Url.parse(destinationUrl, mStripQuery);
+        if (url == null) {
+            return null;
+        }
+        synchronized (this) {
+            return findLocked(url, nowMillis);
+        }
+    }
+
+    private EventLogRecord findLocked(Url url, long nowMillis) {
+        if (mMatchMode == MATCH_DOMAIN) {
+            EventLogRecord found = null;
+            for (Node schemeNode : mSchemes.values()) {
+                found = newest(found, findDomain(schemeNode, url, nowMillis));
+            }
+            return found;
+        }
+        Node node = mSchemes.get(url.mScheme);
+        for (int i = 0; node != null && i < url.mHostLabels.length; i++) {
+            node = node.mHostChildren == null ? null : node.mHostChildren.get(url.mHostLabels[i]);
+        }
+        if (node == null) {
+            return null;
+        }
+        EventLogRecord found = null;
+        int pathSize = url.mPath.size();
+        for (int i = 0; node != null; i++) {
+            if (mMatchMode == MATCH_PREFIX || i == pathSize) {
+                found = newest(found, inWindow(node.mExact, nowMillis));
+            }
+            if (i == pathSize) {
+                break;
+            }
+            node = node.mPathChildren == null ? null : node.mPathChildren.get(url.mPath.get(i));
+        }
+        return found;
+    }
+
+    @Override
+    protected void add(EventLogRecord ev) {
+        ContentValues row = getRow(ev);
+        Url url = row == null ? null : Url.parse(row.getAsString(mKeyColumn), mStripQuery);
+        if (url == null) {
+            return;
+        }
+        Node node = mSchemes.computeIfAbsent(url.mScheme, k -> new Node());
+        for (String label : url.mHostLabels) {
+            node = node.hostChild(label);
+        }
+        if (isNewer(ev, node.mHostLatest)) {
+            node.mHostLatest = ev;
+        }
+        for (String segment : url.mPath) {
+            node = node.pathChild(segment);
+        }
+        if (isNewer(ev, node.mExact)) {
+            node.mExact = ev;
+        }
+    }
+
+    @Override
+    protected void expire(long windowStartMillis) {
+        if (mLastPruneMillis != Long.MIN_VALUE
+                && windowStartMillis - mLastPruneMillis < PRUNE_INTERVAL_MILLIS) {
+            return;
+        }
+        mLastPruneMillis = windowStartMillis;
+        Iterator<Node> it = mSchemes.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().prune(windowStartMillis)) {
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void clearEntries() {
+        mSchemes.clear();
+        mLastPruneMillis = Long.MIN_VALUE;
+    }
+
+    private EventLogRecord findDomain(Node schemeNode, Url url, long nowMillis) {
+        EventLogRecord found = null;
+        Node node = schemeNode;
+        for (int i = 0; i < url.mHostLabels.length; i++) {
+            node = node.mHostChildren == null ? null : node.mHostChildren.get(url.mHostLabels[i]);
+            if (node == null) {
+                break;
+            }
+            if (i + 1 >= MIN_DOMAIN_LABELS) {
+                found = newest(found, inWindow(node.mHostLatest, nowMillis));
+            }
+        }
+        return found;
+    }
+
+    private EventLogRecord inWindow(EventLogRecord ev, long nowMillis) {
+        return isInWindow(ev, nowMillis) ? ev : null;
+    }
+
+    private static EventLogRecord newest(EventLogRecord a, EventLogRecord b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && isNewer(b, a) ? b : a;
+    }
+
+    private static final class Node {
+        Map<String, Node> mHostChildren;
+        Map<String, Node> mPathChildren;
+        // Most recent event whose landing page ends at this node.
+        EventLogRecord mExact;
+        // Most recent event whose landing page host ends at this node, for any path.
+        EventLogRecord mHostLatest;
+
+        Node hostChild(String label) {
+            if (mHostChildren == null) {
+                mHostChildren = new HashMap<>();
+            }
+            return mHostChildren.computeIfAbsent(label, k -> new Node());
+        }
+
+        Node pathChild(String segment) {
+            if (mPathChildren == null) {
+                mPathChildren = new HashMap<>();
+            }
+            return mPathChildren.computeIfAbsent(segment, k -> new Node());
+        }
+
+        /** Drops expired events and empty subtrees. Returns true if this node is now empty. */
+        boolean prune(long windowStartMillis) {
+            if (mExact != null && mExact.getTime().toEpochMilli() < windowStartMillis) {
+                mExact = null;
+            }
+            if (mHostLatest != null && mHostLatest.getTime().toEpochMilli() < windowStartMillis) {
+                mHostLatest = null;
+            }
+            mHostChildren = pruneChildren(mHostChildren, windowStartMillis);
+            mPathChildren = pruneChildren(mPathChildren, windowStartMillis);
+            return mExact == null
+                    && mHostLatest == null
+                    && mHostChildren == null
+                    && mPathChildren == null;
+        }
+
+        private static Map<String, Node> pruneChildren(
+                Map<String, Node> children, long windowStartMillis) {
+            if (children == null) {
+                return null;
+            }
+            children.values().removeIf(child -> child.prune(windowStartMillis));
+            return children.isEmpty() ? null : children;
+        }
+    }
+
+    /** A URL reduced to its scheme, reversed host labels, path segments and optional query. */
+    static final class Url {
+        final String mScheme;
+        final String[] mHostLabels;
+        final List<String> mPath;
+
+        private Url(String scheme, String[] hostLabels, List<String> path) {
+            mScheme = scheme;
+            mHostLabels = hostLabels;
+            mPath = path;
+        }
+
+        /** Returns the normalized form of {@code url}, or null if it is not absolute. */
+        static Url parse(String url, boolean stripQuery) {
+            if (url == null) {
+                return null;
+            }
+            url = url.trim();
+            int schemeEnd = url.indexOf("://");
+            if (schemeEnd <= 0) {
+                return null;
+            }
+            String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+            int authorityStart = schemeEnd + 3;
+            int end = url.length();
+            int fragment = url.indexOf('#', authorityStart);
+            if (fragment >= 0) {
+                end = fragment;
+            }
+            int query = url.indexOf('?', authorityStart);
+            if (query >= end) {
+                query = -1;
+            }
+            int pathEnd = query >= 0 ? query : end;
+            int authorityEnd = url.indexOf('/', authorityStart);
+            if (authorityEnd < 0 || authorityEnd > pathEnd) {
+                authorityEnd = pathEnd;
+            }
+
+            String host = normalizeHost(scheme, url.substring(authorityStart, authorityEnd));
+            if (host.isEmpty()) {
+                return null;
+            }
+            String[] labels = host.split("\\.", -1);
+            for (int i = 0, j = labels.length - 1; i < j; i++, j--) {
+                String tmp = labels[i];
+                labels[i] = labels[j];
+                labels[j] = tmp;
+            }
+
+            ArrayList<String> path = new ArrayList<>();
+            int start = authorityEnd;
+            while (start < pathEnd) {
+                int next = url.indexOf('/', start + 1);
+                if (next < 0 || next > pathEnd) {
+                    next = pathEnd;
+                }
+                String segment = url.substring(start + 1, next);
+                if (segment.equals("..")) {
+                    if (!path.isEmpty()) {
+                        path.remove(path.size() - 1);
+                    }
+                } else if (!segment.isEmpty() && !segment.equals(".")) {
+                    path.add(segment);
+                }
+                start = next;
+            }
+            if (!stripQuery && query >= 0 && query + 1 < end) {
+                // The '?' prefix keeps the query from colliding with a path segment.
+                path.add(url.substring(query, end));
+            }
+            return new Url(scheme, labels, path);
+        }
+
+        private static String normalizeHost(String scheme, String authority) {
+            int userInfo = authority.lastIndexOf('@');
+            String host = userInfo >= 0 ? authority.substring(userInfo + 1) : authority;
+            int portStart = host.lastIndexOf(':');
+            if (portStart >= 0 && host.indexOf(']', portStart) < 0) {
+                String port = host.substring(portStart + 1);
+                boolean isDefault =
+                        port.isEmpty()
+                                || (scheme.equals("http") && port.equals("80"))
+                                || (scheme.equals("https") && port.equals("443"));
+                if (isDefault) {
+                    host = host.substring(0, portStart);
+                }
+            }
+            host = host.toLowerCase(Locale.ROOT);
+            while (host.endsWith(".")) {
+                host = host.substring(0, host.length() - 1);
+            }
+            return host;
+        }
+    }
+}
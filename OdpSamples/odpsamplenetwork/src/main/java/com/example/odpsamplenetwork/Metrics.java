@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.os.OutcomeReceiver;
+import android.os.Trace;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process latency histograms, counters and trace sections for the sample handler.
+ *
+ * <p>Timers use {@link System#nanoTime()} and record into fixed-size log-linear histograms. Trace
+ * section and counter names are derived once per name and reused, so after the first use of a
+ * name timing a stage allocates only its {@link Timer}. {@link #dump()} renders all histograms
+ * and counters as a single JSON line for offline analysis.
+ */
+final class Metrics {
+    static final String TAG = "OdpSampleNetworkMetrics";
+
+    static final String STAGE_READ_ADS = "readAds";
+    static final String STAGE_MATCH_ADS = "matchAds";
+    static final String STAGE_RUN_INFERENCE = "runInference";
+    static final String STAGE_RUN_AUCTION = "runAuction";
+    static final String STAGE_BUILD_RESULT = "buildResult";
+
+    static final String COUNTER_ADS_PARSED = "ads_parsed";
+    static final String COUNTER_ADS_MATCHED = "ads_matched";
+    static final String COUNTER_ADS_SCORED = "ads_scored";
+    static final String COUNTER_JOINED_EVENTS_READ = "joined_events_read";
+    static final String COUNTER_EXAMPLE_CACHE_HITS = "example_cache_hits";
+    static final String COUNTER_EXAMPLE_CACHE_MISSES = "example_cache_misses";
+    static final String COUNTER_EXAMPLE_CACHE_EVICTIONS = "example_cache_evictions";
+    static final String COUNTER_RENDER_HANDOFF_HITS = "render_handoff_hits";
+    static final String COUNTER_RENDER_HANDOFF_MISSES = "render_handoff_misses";
+    static final String COUNTER_EXECUTE_COALESCED = "execute_coalesced";
+    static final String COUNTER_AUCTION_CACHE_HITS = "auction_cache_hits";
+    static final String COUNTER_AUCTION_CACHE_MISSES = "auction_cache_misses";
+    static final String COUNTER_AUCTION_CACHE_INVALIDATIONS = "auction_cache_invalidations";
+    static final String COUNTER_EXECUTE_DEGRADED = "execute_degraded";
+    static final String COUNTER_CATALOG_LOADS_COALESCED = "catalog_loads_coalesced";
+
+    private static final String TRACE_PREFIX = "OdpSampleNetwork:";
+    private static final AtomicInteger sAsyncCookie = new AtomicInteger();
+    private static final ConcurrentHashMap<String, LatencyHistogram> sHistograms =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, AtomicLong> sCounters =
+            new ConcurrentHashMap<>();
+    // Derived names by stage name, so that they are concatenated only once.
+    private static final ConcurrentHashMap<String, String> sSectionNames =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, String> sErrorCounterNames =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Starts a synchronous timer and trace section. Must be closed on the thread that opened it,
+     * in a finally block.
+     */
+    static Timer time(String name) {
+        String sectionName = derivedName(sSectionNames, TRACE_PREFIX, name, "");
+        Trace.beginSection(sectionName);
+        return new Timer(name, sectionName, /* cookie */ -1);
+    }
+
+    /** Starts a timer and async trace section that may be stopped on any thread. */
+    static Timer timeAsync(String name) {
+        int cookie = sAsyncCookie.incrementAndGet();
+        String sectionName = derivedName(sSectionNames, TRACE_PREFIX, name, "");
+        Trace.beginAsyncSection(sectionName, cookie);
+        return new Timer(name, sectionName, cookie);
+    }
+
+    /** Wraps a receiver so that the handler latency is recorded when it completes. */
+    static <R, E extends Throwable> OutcomeReceiver<R, E> timed(
+            String name, OutcomeReceiver<R, E> receiver) {
+        Timer timer = timeAsync(name);
+        return new OutcomeReceiver<R, E>() {
+            @Override
+            public void onResult(R result) {
+                timer.close();
+                receiver.onResult(result);
+            }
+
+            @Override
+            public void onError(E error) {
+                timer.close();
+                increment(derivedName(sErrorCounterNames, "", name, "_errors"), 1);
+                receiver.onError(error);
+            }
+        };
+    }
+
+    static void record(String name, long elapsedNanos) {
+        histogram(name).record(elapsedNanos);
+    }
+
+    static void increment(String name, long delta) {
+        AtomicLong counter = sCounters.get(name);
+        if (counter == null) {
+            counter = sCounters.computeIfAbsent(name, k -> new AtomicLong());
+        }
+        counter.addAndGet(delta);
+    }
+
+    static long getCount(String name) {
+        AtomicLong counter = sCounters.get(name);
+        return counter == null ? 0L : counter.get();
+    }
+
+    /** Returns the latency at {@code percentile} (0-100) in microseconds, or 0 if unrecorded. */
+    static long getPercentileMicros(String name, double percentile) {
+        LatencyHistogram histogram = sHistograms.get(name);
+        return histogram == null ? 0L : histogram.percentileMicros(percentile);
+    }
+
+    /** Returns all histograms and counters as a single JSON object string. */
+    static String dump() {
+        StringBuilder sb = new StringBuilder("{\"latency_us\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(sHistograms).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            LatencyHistogram h = e.getValue();
+            sb.append('"').append(e.getKey()).append("\":{")
+                    .append("\"count\":").append(h.count())
+                    .append(",\"p50\":").append(h.percentileMicros(50))
+                    .append(",\"p90\":").append(h.percentileMicros(90))
+                    .append(",\"p99\":").append(h.percentileMicros(99))
+                    .append(",\"max\":").append(h.maxMicros())
+                    .append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, AtomicLong> e : new TreeMap<>(sCounters).entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+        }
+        return sb.append("}}").toString();
+    }
+
+    static void reset() {
+        sHistograms.clear();
+        sCounters.clear();
+    }
+
+    private static String derivedName(
+            ConcurrentHashMap<String, String> names, String prefix, String name, String suffix) {
+        String derived = names.get(name);
+        if (derived == null) {
+            derived = names.computeIfAbsent(name, k -> prefix + k + suffix);
+        }
+        return derived;
+    }
+
+    private static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = sHistograms.get(name);
+        if (histogram == null) {
+            histogram = sHistograms.computeIfAbsent(name, k -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    /** A running timer. Closing it more than once has no effect. */
+    static final class Timer implements AutoCloseable {
+        private final String mName;
+        private final String mSectionName;
+        private final int mCookie;
+        private final long mStartNanos;
+        private boolean mClosed;
+
+        private Timer(String name, String sectionName, int cookie) {
+            mName = name;
+            mSectionName = sectionName;
+            mCookie = cookie;
+            mStartNanos = System.nanoTime();
+        }
+
+        /** Returns nanoseconds elapsed since the timer started. */
+        long elapsedNanos() {
+            return System.nanoTime() - mStartNanos;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (mClosed) {
+                    return;
+                }
+                mClosed = true;
+            }
+            record(mName, elapsedNanos());
+            if (mCookie < 0) {
+                Trace.endSection();
+            } else {
+                Trace.endAsyncSection(mSectionName, mCookie);
+            }
+        }
+    }
+
+    /**
+     * Log-linear histogram over microseconds: each power of two is split into four sub-buckets,
+     * which bounds the percentile error to 25% with a fixed 160-slot array.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int NUM_BUCKETS = 40 * SUB_BUCKETS;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mMaxMicros = new AtomicLong();
+
+        void record(long elapsedNanos) {
+            long micros = Math.max(0L, elapsedNanos / 1000L);
+            mBuckets.incrementAndGet(bucketIndex(micros));
+            mCount.incrementAndGet();
+            long max = mMaxMicros.get();
+            while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+                max = mMaxMicros.get();
+            }
+        }
+
+        long count() {
+            return mCount.get();
+        }
+
+        long maxMicros() {
+            return mMaxMicros.get();
+        }
+
+        long percentileMicros(double percentile) {
+            long total = mCount.get();
+            if (total == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += mBuckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), mMaxMicros.get());
+                }
+            }
+            return mMaxMicros.get();
+        }
+
+        private static int bucketIndex(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int log2 = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (log2 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            int index = (log2 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+            return Math.min(index, NUM_BUCKETS - 1);
+        }
+
+        private static long bucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int log2 = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int sub = index % SUB_BUCKETS;
+            long width = 1L << (log2 - SUB_BUCKET_BITS);
+            return (1L << log2) + (sub + 1) * width - 1;
+        }
+    }
+
+    private Metrics() {
+    }
+}
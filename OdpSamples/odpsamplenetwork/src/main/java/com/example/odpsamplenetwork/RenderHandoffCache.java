@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Hands the render fields of recent auction winners from onExecute to onRender, so rendering
+ * does not read and parse the ad again.
+ *
+ * <p>Entries are keyed by ad id, tagged with the catalog version they were read at and expire
+ * after a fixed time. The cache holds a bounded number of winners and drops the oldest first.
+ */
+final class RenderHandoffCache {
+    private final int mMaxEntries;
+    private final long mTtlMillis;
+    // Insertion ordered, so the head is always the entry that expires first.
+    private final LinkedHashMap<String, Winner> mWinners = new LinkedHashMap<>();
+
+    RenderHandoffCache(int maxEntries, long ttlMillis) {
+        mMaxEntries = maxEntries;
+        mTtlMillis = ttlMillis;
+    }
+
+    synchronized void put(Winner winner, long nowMillis) {
+        mWinners.remove(winner.mId);
+        mWinners.put(winner.mId, winner.withExpiry(nowMillis + mTtlMillis));
+        CacheEviction.evictOldest(mWinners, mMaxEntries, w -> w.mExpiresAtMillis, nowMillis);
+    }
+
+    /** Returns the unexpired winner for {@code id} read at {@code version}, or null. */
+    synchronized Winner get(String id, long version, long nowMillis) {
+        Winner winner = mWinners.get(id);
+        boolean hit =
+                winner != null
+                        && winner.mVersion == version
+                        && winner.mExpiresAtMillis > nowMillis;
+        Metrics.increment(
+                hit
+                        ? Metrics.COUNTER_RENDER_HANDOFF_HITS
+                        : Metrics.COUNTER_RENDER_HANDOFF_MISSES,
+                1);
+        return hit ? winner : null;
+    }
+
+    /** The fields of an ad needed to render it. */
+    static final class Winner {
+        final String mId;
+        final String mLandingPage;
+        final String mText;
+        final String mTemplateId;
+        final long mVersion;
+        final long mExpiresAtMillis;
+
+        Winner(String id, String landingPage, String text, String templateId, long version) {
+            this(id, landingPage, text, templateId, version, Long.MAX_VALUE);
+        }
+
+        private Winner(
+                String id,
+                String landingPage,
+                String text,
+                String templateId,
+                long version,
+                long expiresAtMillis) {
+            mId = id;
+            mLandingPage = landingPage;
+            mText = text;
+            mTemplateId = templateId;
+            mVersion = version;
+            mExpiresAtMillis = expiresAtMillis;
+        }
+
+        private Winner withExpiry(long expiresAtMillis) {
+            return new Winner(mId, mLandingPage, mText, mTemplateId, mVersion, expiresAtMillis);
+        }
+    }
+}
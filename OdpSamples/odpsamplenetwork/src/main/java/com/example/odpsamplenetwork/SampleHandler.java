@@ -38,13 +38,13 @@ import android.adservices.ondevicepersonalization.RenderInput;
 import android.adservices.ondevicepersonalization.RenderOutput;
 import android.adservices.ondevicepersonalization.RenderingConfig;
 import android.adservices.ondevicepersonalization.RequestLogRecord;
-import android.adservices.ondevicepersonalization.TrainingExampleRecord;
 import android.adservices.ondevicepersonalization.TrainingExamplesInput;
 import android.adservices.ondevicepersonalization.TrainingExamplesOutput;
 import android.adservices.ondevicepersonalization.TrainingInterval;
 import android.adservices.ondevicepersonalization.UserData;
 import android.adservices.ondevicepersonalization.WebTriggerInput;
 import android.adservices.ondevicepersonalization.WebTriggerOutput;
+import android.content.ComponentCallbacks2;
 import android.content.ContentValues;
 import android.net.Uri;
 import android.os.OutcomeReceiver;
@@ -53,42 +53,35 @@ import android.os.Process;
 import android.os.StrictMode;
 import android.os.StrictMode.ThreadPolicy;
 import android.util.Base64;
-import android.util.JsonReader;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.concurrent.futures.CallbackToFutureAdapter;
 
-import com.google.common.base.Strings;
 import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.google.protobuf.ByteString;
-import com.google.setfilters.cuckoofilter.CuckooFilter;
-
-import org.tensorflow.example.BytesList;
-import org.tensorflow.example.Example;
-import org.tensorflow.example.Feature;
-import org.tensorflow.example.Features;
-import org.tensorflow.example.FloatList;
-import org.tensorflow.example.Int64List;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Sample IsolatedWorker */
 public class SampleHandler implements IsolatedWorker {
@@ -106,7 +99,45 @@ public class SampleHandler implements IsolatedWorker {
     private static final String SOURCE_TYPE_KEY = "sourcetype";
     private static final String LANDING_PAGE_KEY = "landingpage";
     private static final String WEB_TRIGGER_EVENT_DATA_KEY = "webtriggerdata";
+    // Event parameter naming the request log row, and so the slot, an event belongs to.
+    private static final String ROW_INDEX_KEY = "row";
+    private static final String SLOTS_PARAM = "slots";
+    private static final int MAX_SLOTS = 10;
+    // Optional string array of context terms, used instead of the single "keyword" param.
+    private static final String KEYWORDS_PARAM = "keywords";
+    // "all" requires ad keywords to contain every term; any other value matches any term.
+    private static final String KEYWORD_MATCH_PARAM = "keyword_match";
+    private static final String KEYWORD_MATCH_ALL = "all";
+    // Optional time to live of cached auction results in milliseconds; 0 turns the cache off.
+    private static final String AUCTION_CACHE_TTL_PARAM = "auction_cache_ttl_millis";
+    // Optional latency budget in milliseconds for matching and inference, counted from when the
+    // ad catalog is ready so that a cold load or download never spends it; 0 or less waits for
+    // inference however long it takes. A request that joins an identical one in flight shares
+    // that request's deadline.
+    private static final String DEADLINE_PARAM = "deadline_millis";
+    private static final long EXECUTE_DEADLINE_MILLIS = 300;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    // Marks request log rows whose bids were priced without inference.
+    private static final String DEGRADED_KEY = "degraded";
+    // Scores every candidate when inference misses the deadline, until a successful inference
+    // replaces it with the mean of its predictions.
+    private static final float DEFAULT_PRIOR_CTR = 0.01f;
+    private static volatile float sPriorCtr = DEFAULT_PRIOR_CTR;
     private static final int BID_PRICE_OFFSET = 0;
+    // Written by the MakeTrainingExamples tool once every example row holds a serialized
+    // tf.Example. Without it example rows are text and are always converted.
+    private static final String EXAMPLE_FORMAT_KEY = "training_example_format";
+    private static final String SERIALIZED_EXAMPLE_FORMAT = "tf.Example";
+    private static final int MNIST_NUM_PIXELS = 784;
+    // Per-call limits of the training example populations, unchanged by paging: criteo samples
+    // up to 10 of its first 100 rows, keras generates fewer than 400 random examples and mnist
+    // reads its first 299 rows in order.
+    private static final int CRITEO_MAX_EXAMPLES_PER_CALL = 10;
+    private static final int CRITEO_NUM_ROWS = 100;
+    private static final int KERAS_MAX_EXAMPLES_PER_CALL = 400;
+    private static final int MNIST_NUM_ROWS = 299;
+    private static final byte[] FEATURE_X = ExampleWriter.name("x");
+    private static final byte[] FEATURE_Y = ExampleWriter.name("y");
     private static final String TRANSPARENT_PNG_BASE64 =
             "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAA"
                     + "AAXNSR0IArs4c6QAAAAtJREFUGFdjYAACAAAFAAGq1chRAAAAAElFTkSuQmCC";
@@ -117,7 +148,56 @@ public class SampleHandler implements IsolatedWorker {
     private static final int ERROR_CODE_WORKER_ON_RENDER_ERROR = 13;
     private static final int ERROR_CODE_WORKER_ON_EVENT_ERROR = 14;
     private static final int ERROR_CODE_WORKER_ON_WEB_TRIGGER_ERROR = 15;
-
+    private static final int ERROR_CODE_WORKER_ON_TRAINING_EXAMPLES_ERROR = 16;
+    private static final int ERROR_CODE_WORKER_ON_DOWNLOAD_COMPLETED_ERROR = 17;
+    // Payload logging (ad JSON, predictions, rendered content) is only built when enabled with
+    // "adb shell setprop log.tag.OdpSampleNetwork VERBOSE" before the isolated process starts.
+    private static final boolean VERBOSE_LOGGING = Log.isLoggable(TAG, Log.VERBOSE);
+    private static final long ATTRIBUTION_WINDOW_MILLIS = 24 * 60 * 60 * 1000;
+
+    // Outlives a single request so that both attribution paths only fold in newly logged
+    // events, fetched once for all indexes.
+    private static final JoinedEventCursor sJoinedEventCursor =
+            new JoinedEventCursor(ATTRIBUTION_WINDOW_MILLIS);
+    private static final AttributionIndex sAdIdAttributionIndex =
+            new AttributionIndex(sJoinedEventCursor, AD_ID_KEY);
+    // Exact match on the normalized URL keeps the original attribution rule; switch to
+    // MATCH_PREFIX or MATCH_DOMAIN, or strip queries, to attribute more loosely.
+    private static final LandingPageIndex sLandingPageIndex =
+            new LandingPageIndex(
+                    sJoinedEventCursor,
+                    LANDING_PAGE_KEY,
+                    LandingPageIndex.MATCH_EXACT,
+                    /* stripQuery */ false);
+
+    // Bumped whenever a download completes, so that caches keyed by it stop serving data read
+    // from the previous catalog.
+    private static final AtomicLong sCatalogVersion = new AtomicLong();
+    private static final int RENDER_HANDOFF_MAX_ENTRIES = 64;
+    private static final long RENDER_HANDOFF_TTL_MILLIS = 5 * 60 * 1000;
+    private static final RenderHandoffCache sRenderHandoffCache =
+            new RenderHandoffCache(RENDER_HANDOFF_MAX_ENTRIES, RENDER_HANDOFF_TTL_MILLIS);
+    // The version is bumped before a download is committed, so a load racing the commit can
+    // capture the previous ads; the age limit bounds how long such a catalog, or examples
+    // converted from the previous data, are served.
+    private static final long AD_CATALOG_MAX_AGE_MILLIS = 10 * 60 * 1000;
+    private static volatile AdCatalog sAdCatalog;
+    // Concurrent requests that find no catalog share one load of the current version.
+    private static final SingleFlight<Long, AdCatalog> sCatalogLoads =
+            new SingleFlight<>(Metrics.COUNTER_CATALOG_LOADS_COALESCED);
+    private static final long EXAMPLE_CACHE_MAX_BYTES = 8L << 20;
+    private static final ExampleCache sExampleCache =
+            new ExampleCache(EXAMPLE_CACHE_MAX_BYTES, AD_CATALOG_MAX_AGE_MILLIS);
+    // Concurrent requests for the same terms, apps and catalog share one match and inference.
+    private static final SingleFlight<ExecuteKey, ScoredCandidates> sScoringFlights =
+            new SingleFlight<>(Metrics.COUNTER_EXECUTE_COALESCED);
+    private static final long AUCTION_CACHE_TTL_MILLIS = 30 * 1000;
+    private static final int AUCTION_CACHE_MAX_ENTRIES = 128;
+    private static final AuctionCache sAuctionCache = new AuctionCache(AUCTION_CACHE_MAX_ENTRIES);
+
+    // onDownloadCompleted() runs on the caller's thread and spreads key ranges over this many
+    // sBackgroundExecutor threads.
+    private static final int DOWNLOAD_FILTER_PARALLELISM = 4;
     private static final ListeningExecutorService sBackgroundExecutor =
             MoreExecutors.listeningDecorator(
                     Executors.newFixedThreadPool(
@@ -127,6 +207,37 @@ public class SampleHandler implements IsolatedWorker {
                                     Process.THREAD_PRIORITY_BACKGROUND,
                                     Optional.of(getIoThreadPolicy()))));
 
+    // A cold catalog load fetches and parses contiguous ranges of at least this many ads on
+    // each sCatalogLoadExecutor thread.
+    private static final int MIN_ADS_PER_LOAD_TASK = 64;
+    private static final int CATALOG_LOAD_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final ListeningExecutorService sCatalogLoadExecutor =
+            MoreExecutors.listeningDecorator(
+                    Executors.newFixedThreadPool(
+                            CATALOG_LOAD_PARALLELISM,
+                            createThreadFactory(
+                                    "Catalog Load Thread",
+                                    Process.THREAD_PRIORITY_BACKGROUND,
+                                    Optional.of(getIoThreadPolicy()))));
+
+    // Cancels inference that misses the execute deadline.
+    private static final ScheduledExecutorService sTimeoutExecutor =
+            Executors.newSingleThreadScheduledExecutor(
+                    createThreadFactory(
+                            "Timeout Thread", Process.THREAD_PRIORITY_DEFAULT, Optional.empty()));
+
+    private static final int TRAINING_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    // Training example generation fans out here; callers block on it from sBackgroundExecutor,
+    // so it must not share that pool.
+    private static final ListeningExecutorService sTrainingExecutor =
+            MoreExecutors.listeningDecorator(
+                    Executors.newFixedThreadPool(
+                            TRAINING_PARALLELISM,
+                            createThreadFactory(
+                                    "Training Thread",
+                                    Process.THREAD_PRIORITY_BACKGROUND,
+                                    Optional.of(getIoThreadPolicy()))));
+
     private final KeyValueStore mRemoteData;
     private final EventUrlProvider mEventUrlProvider;
     private final UserData mUserData;
@@ -172,11 +283,25 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull DownloadCompletedInput input,
             @NonNull OutcomeReceiver<DownloadCompletedOutput, IsolatedServiceException> receiver) {
         Log.d(TAG, "onDownload() started.");
+        var timedReceiver = Metrics.timed("onDownloadCompleted", receiver);
+        sCatalogVersion.incrementAndGet();
+        List<String> retainedKeys;
+        try {
+            retainedKeys =
+                    new EligibilityFilter(mUserData)
+                            .getRetainedKeys(
+                                    input.getDownloadedContents(),
+                                    sBackgroundExecutor,
+                                    DOWNLOAD_FILTER_PARALLELISM);
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "onDownloadCompleted() failed", e);
+            timedReceiver.onError(
+                    new IsolatedServiceException(ERROR_CODE_WORKER_ON_DOWNLOAD_COMPLETED_ERROR));
+            return;
+        }
         DownloadCompletedOutput downloadResult =
-                new DownloadCompletedOutput.Builder()
-                        .setRetainedKeys(getFilteredKeys(input.getDownloadedContents()))
-                        .build();
-        receiver.onResult(downloadResult);
+                new DownloadCompletedOutput.Builder().setRetainedKeys(retainedKeys).build();
+        timedReceiver.onResult(downloadResult);
     }
 
     @Override
@@ -190,7 +315,8 @@ public class SampleHandler implements IsolatedWorker {
                 && input.getAppParams().getString("keyword").equalsIgnoreCase("crash")) {
             throw new RuntimeException("Client-requested crash.");
         }
-        sBackgroundExecutor.execute(() -> handleOnExecute(input, receiver));
+        var timedReceiver = Metrics.timed("onExecute", receiver);
+        sBackgroundExecutor.execute(() -> handleOnExecute(input, timedReceiver));
     }
 
     @Override
@@ -198,7 +324,8 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull TrainingExamplesInput input,
             @NonNull OutcomeReceiver<TrainingExamplesOutput, IsolatedServiceException> receiver) {
         Log.d(TAG, "onTrainingExamples() started.");
-        sBackgroundExecutor.execute(() -> handleOnTrainingExamples(input, receiver));
+        var timedReceiver = Metrics.timed("onTrainingExamples", receiver);
+        sBackgroundExecutor.execute(() -> handleOnTrainingExamples(input, timedReceiver));
     }
 
     @Override
@@ -206,7 +333,8 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull RenderInput input,
             @NonNull OutcomeReceiver<RenderOutput, IsolatedServiceException> receiver) {
         Log.d(TAG, "onRender() started.");
-        sBackgroundExecutor.execute(() -> handleOnRender(input, receiver));
+        var timedReceiver = Metrics.timed("onRender", receiver);
+        sBackgroundExecutor.execute(() -> handleOnRender(input, timedReceiver));
     }
 
     @Override
@@ -214,7 +342,8 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull EventInput input,
             @NonNull OutcomeReceiver<EventOutput, IsolatedServiceException> receiver) {
         Log.d(TAG, "onEvent() started.");
-        sBackgroundExecutor.execute(() -> handleOnWebViewEvent(input, receiver));
+        var timedReceiver = Metrics.timed("onEvent", receiver);
+        sBackgroundExecutor.execute(() -> handleOnWebViewEvent(input, timedReceiver));
     }
 
     @Override
@@ -222,267 +351,535 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull WebTriggerInput input,
             @NonNull OutcomeReceiver<WebTriggerOutput, IsolatedServiceException> receiver) {
         Log.d(TAG, "onWebTrigger() started.");
-        sBackgroundExecutor.execute(() -> handleOnWebTrigger(input, receiver));
+        var timedReceiver = Metrics.timed("onWebTrigger", receiver);
+        sBackgroundExecutor.execute(() -> handleOnWebTrigger(input, timedReceiver));
     }
 
-    private ListenableFuture<List<Ad>> readAds(KeyValueStore remoteData) {
+    /**
+     * Returns the ad catalog for the current catalog version, loading it from {@code remoteData}
+     * unless this process already holds it.
+     */
+    private ListenableFuture<AdCatalog> readAds(KeyValueStore remoteData) {
         Log.d(TAG, "readAds() called.");
-        try {
-            ArrayList<Ad> ads = new ArrayList<>();
-            for (var key : remoteData.keySet()) {
-                if (!key.startsWith("ad")) {
-                    continue;
-                }
-                Ad ad = parseAd(key, remoteData.get(key));
-                if (ad != null) {
-                    ads.add(ad);
-                }
-            }
-            return Futures.immediateFuture(ads);
-        } catch (Exception e) {
-            return Futures.immediateFailedFuture(e);
+        long version = sCatalogVersion.get();
+        AdCatalog cached = sAdCatalog;
+        if (cached != null
+                && cached.mVersion == version
+                && System.currentTimeMillis() - cached.mLoadedAtMillis
+                        < AD_CATALOG_MAX_AGE_MILLIS) {
+            return Futures.immediateFuture(cached);
         }
+        return sCatalogLoads.get(version, () -> loadAds(remoteData, version));
     }
 
-    private boolean isMatch(Ad ad, String requestKeyword) {
-        if (ad.mTargetKeywords != null && !ad.mTargetKeywords.isEmpty()) {
-            if (!ad.mTargetKeywords.contains(requestKeyword)) {
-                return false;
-            }
+    /**
+     * Reads and parses every ad in {@code remoteData}. Contiguous key ranges are fetched and
+     * parsed in parallel on sCatalogLoadExecutor and merged in key set order, so the catalog is
+     * the same as one read key by key.
+     */
+    private ListenableFuture<AdCatalog> loadAds(KeyValueStore remoteData, long version)
+            throws IOException {
+        Metrics.Timer timer = Metrics.timeAsync(Metrics.STAGE_READ_ADS);
+        List<String> dictionary = TermDictionary.read(remoteData);
+        if (dictionary.isEmpty()) {
+            // Hand-written and MakeCuckooFilter repositories spell their terms out, and the
+            // catalog numbers them as it reads the ads instead.
+            Log.d(TAG, "No " + TermDictionary.KEY + " entry, assigning term ids on device.");
         }
-        if (ad.mTargetApps != null && !ad.mTargetApps.isEmpty()) {
-            if (!isInstalledAppFound(ad.mTargetApps)) {
-                return false;
+        List<String> keys = new ArrayList<>();
+        for (var key : remoteData.keySet()) {
+            if (key.startsWith("ad")) {
+                keys.add(key);
             }
         }
-        if (ad.mExcludes != null && !ad.mExcludes.isEmpty()) {
-            if (ad.mExcludes.contains(requestKeyword)) {
-                return false;
-            }
-            if (isInstalledAppFound(ad.mExcludes)) {
-                return false;
-            }
+        int rangeSize =
+                Math.max(
+                        MIN_ADS_PER_LOAD_TASK,
+                        (keys.size() + CATALOG_LOAD_PARALLELISM - 1) / CATALOG_LOAD_PARALLELISM);
+        List<ListenableFuture<AdCatalog.Builder>> ranges = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += rangeSize) {
+            List<String> range = keys.subList(start, Math.min(keys.size(), start + rangeSize));
+            ranges.add(sCatalogLoadExecutor.submit(() -> parseAds(remoteData, range, dictionary)));
         }
-        if (ad.mTargetKeywordFilter != null) {
-            if (!ad.mTargetKeywordFilter.contains(requestKeyword)) {
-                return false;
+        ListenableFuture<AdCatalog> catalogFuture =
+                Futures.transform(
+                        Futures.allAsList(ranges),
+                        builders -> {
+                            // Appending to the first range saves copying the largest part.
+                            AdCatalog.Builder builder =
+                                    builders.isEmpty()
+                                            ? new AdCatalog.Builder(dictionary)
+                                            : builders.get(0);
+                            for (int i = 1; i < builders.size(); i++) {
+                                builder.addAll(builders.get(i));
+                            }
+                            AdCatalog catalog = builder.build(version, System.currentTimeMillis());
+                            sAdCatalog = catalog;
+                            Metrics.increment(Metrics.COUNTER_ADS_PARSED, catalog.mSize);
+                            return catalog;
+                        },
+                        sCatalogLoadExecutor);
+        catalogFuture.addListener(timer::close, MoreExecutors.directExecutor());
+        return catalogFuture;
+    }
+
+    private static AdCatalog.Builder parseAds(
+            KeyValueStore remoteData, List<String> keys, List<String> dictionary) {
+        AdCatalog.Builder builder = new AdCatalog.Builder(dictionary);
+        for (String key : keys) {
+            byte[] data = remoteData.get(key);
+            if (VERBOSE_LOGGING && data != null) {
+                Log.v(TAG, "parseAd: " + key + " " + new String(data, StandardCharsets.UTF_8));
             }
+            builder.add(key, data);
         }
-        if (ad.mExcludeFilter != null) {
-            if (ad.mExcludeFilter.contains(requestKeyword)) {
-                return false;
-            }
-            if (isInstalledAppFound(ad.mExcludeFilter)) {
-                return false;
+        return builder;
+    }
+
+    /**
+     * Returns the auction result of a request for {@code slots} slots, from the auction cache
+     * when an identical request was recently answered.
+     */
+    private ListenableFuture<AuctionResult> getAuctionResult(
+            AdCatalog catalog, ExecuteInput input, int slots) {
+        PersistableBundle appParams = input == null ? null : input.getAppParams();
+        String[] terms = getRequestTerms(appParams);
+        boolean matchAllTerms =
+                appParams != null
+                        && KEYWORD_MATCH_ALL.equals(appParams.getString(KEYWORD_MATCH_PARAM));
+        ExecuteKey key =
+                new ExecuteKey(
+                        terms,
+                        matchAllTerms,
+                        ExecuteKey.fingerprintApps(mUserData),
+                        catalog.mVersion);
+        long ttlMillis =
+                appParams == null
+                        ? AUCTION_CACHE_TTL_MILLIS
+                        : appParams.getLong(AUCTION_CACHE_TTL_PARAM, AUCTION_CACHE_TTL_MILLIS);
+        if (ttlMillis > 0) {
+            AuctionResult cached = sAuctionCache.get(key, slots, System.currentTimeMillis());
+            if (cached != null) {
+                return Futures.immediateFuture(cached);
             }
         }
-        if (ad.mTargetAppFilter != null) {
-            if (!isInstalledAppFound(ad.mTargetAppFilter)) {
-                return false;
-            }
+        long deadlineNanos = getDeadlineNanos(appParams);
+        return FluentFuture.from(scoreAds(catalog, key, terms, matchAllTerms, deadlineNanos))
+                .transform(
+                        scored -> {
+                            AuctionResult auction = runAuction(scored, slots);
+                            // A degraded result is not cached, so the next request retries.
+                            if (ttlMillis > 0 && !auction.mDegraded) {
+                                long now = System.currentTimeMillis();
+                                sAuctionCache.put(key, slots, auction, now + ttlMillis, now);
+                            }
+                            return auction;
+                        },
+                        sBackgroundExecutor);
+    }
+
+    /**
+     * Matches and scores the ads of {@code catalog} for a request, joining an identical request
+     * already in flight instead of repeating its work. A request that joins shares the deadline
+     * of the request that started the work.
+     */
+    private ListenableFuture<ScoredCandidates> scoreAds(
+            AdCatalog catalog,
+            ExecuteKey key,
+            String[] terms,
+            boolean matchAllTerms,
+            long deadlineNanos) {
+        return sScoringFlights.get(
+                key,
+                () ->
+                        FluentFuture.from(
+                                        Futures.submit(
+                                                () -> matchAds(catalog, terms, matchAllTerms),
+                                                sBackgroundExecutor))
+                                .transformAsync(
+                                        candidates -> scoreCandidates(candidates, deadlineNanos),
+                                        sBackgroundExecutor));
+    }
+
+    /**
+     * Scores {@code candidates} with the model. If inference fails or misses the deadline, it is
+     * cancelled and every candidate is scored with the prior CTR instead, so the auction ranks
+     * by max CPC.
+     */
+    private ListenableFuture<ScoredCandidates> scoreCandidates(
+            Candidates candidates, long deadlineNanos) {
+        long remainingNanos =
+                deadlineNanos == NO_DEADLINE ? NO_DEADLINE : deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+            return Futures.immediateFuture(degrade(candidates, "deadline passed before inference"));
+        }
+        ListenableFuture<InferenceOutput> inferenceFuture = runInference(candidates);
+        if (remainingNanos != NO_DEADLINE) {
+            // Cancels the inference future when the deadline passes first.
+            inferenceFuture =
+                    Futures.withTimeout(
+                            inferenceFuture,
+                            remainingNanos,
+                            TimeUnit.NANOSECONDS,
+                            sTimeoutExecutor);
+        }
+        return FluentFuture.from(inferenceFuture)
+                .transform(
+                        inference -> {
+                            float[] prediction = (float[]) inference.getDataOutputs().get(0);
+                            updatePriorCtr(prediction);
+                            return new ScoredCandidates(candidates, prediction, false);
+                        },
+                        MoreExecutors.directExecutor())
+                .catching(
+                        Exception.class,
+                        e -> degrade(candidates, e.toString()),
+                        MoreExecutors.directExecutor());
+    }
+
+    private static ScoredCandidates degrade(Candidates candidates, String reason) {
+        Log.w(TAG, "Scoring ads without inference: " + reason);
+        Metrics.increment(Metrics.COUNTER_EXECUTE_DEGRADED, 1);
+        float[] scores = new float[candidates.mAds.length];
+        Arrays.fill(scores, sPriorCtr);
+        return new ScoredCandidates(candidates, scores, true);
+    }
+
+    private static void updatePriorCtr(float[] prediction) {
+        if (prediction.length == 0) {
+            return;
+        }
+        double sum = 0;
+        for (float p : prediction) {
+            sum += p;
+        }
+        float mean = (float) (sum / prediction.length);
+        if (mean > 0) {
+            sPriorCtr = mean;
         }
-        return true;
     }
 
-    private List<Ad> matchAds(List<Ad> ads, ExecuteInput input) {
+    /** Returns when a request that starts scoring now runs out of time. */
+    private static long getDeadlineNanos(PersistableBundle appParams) {
+        long deadlineMillis =
+                appParams == null
+                        ? EXECUTE_DEADLINE_MILLIS
+                        : appParams.getLong(DEADLINE_PARAM, EXECUTE_DEADLINE_MILLIS);
+        return deadlineMillis > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis)
+                : NO_DEADLINE;
+    }
+
+    private Candidates matchAds(AdCatalog catalog, String[] terms, boolean matchAllTerms) {
         Log.d(TAG, "matchAds() called.");
-        String requestKeyword = "";
-        if (input != null
-                && input.getAppParams() != null
-                && input.getAppParams().getString("keyword") != null) {
-            requestKeyword = input.getAppParams().getString("keyword").toLowerCase().strip();
+        Metrics.Timer timer = Metrics.time(Metrics.STAGE_MATCH_ADS);
+        try {
+            int[] matched = new AdMatcher(catalog, mUserData, terms, matchAllTerms).matchAll();
+            Metrics.increment(Metrics.COUNTER_ADS_MATCHED, matched.length);
+            return new Candidates(catalog, matched);
+        } finally {
+            timer.close();
         }
+    }
 
-        List<Ad> result = new ArrayList<>();
-        for (Ad ad : ads) {
-            if (isMatch(ad, requestKeyword)) {
-                result.add(ad);
+    /**
+     * Returns the distinct, normalized context terms of a request. Without any terms this is the
+     * empty keyword, which only matches ads that have no keyword targeting.
+     */
+    private static String[] getRequestTerms(PersistableBundle appParams) {
+        if (appParams == null) {
+            return new String[] {""};
+        }
+        String[] rawTerms = appParams.getStringArray(KEYWORDS_PARAM);
+        if (rawTerms == null) {
+            String keyword = appParams.getString("keyword");
+            return new String[] {keyword == null ? "" : keyword.toLowerCase().strip()};
+        }
+        LinkedHashSet<String> terms = new LinkedHashSet<>();
+        for (String term : rawTerms) {
+            if (term != null && !term.isBlank()) {
+                terms.add(term.toLowerCase().strip());
             }
         }
-        return result;
+        return terms.isEmpty() ? new String[] {""} : terms.toArray(new String[0]);
     }
 
-    private Ad runAuction(List<Ad> ads, InferenceOutput inferenceOutput) {
-        Log.d(TAG, "runAuction() called.");
-        Ad winner = null;
-        double maxPrice = 0.0;
-        float[] prediction = (float[]) inferenceOutput.getDataOutputs().get(0);
-        Log.i(TAG, "prediction result " + Arrays.toString(prediction));
-        if (prediction.length != ads.size()) {
-            Log.e(TAG, "prediction result doesn't match ads list");
+    /** Returns the number of ad slots requested with the "slots" app param, 1 by default. */
+    private static int getSlotCount(ExecuteInput input) {
+        if (input == null || input.getAppParams() == null) {
+            return 1;
         }
-        for (int i = 0; i < ads.size(); i++) {
-            Ad ad = ads.get(i);
-            double price = ad.mMaxCpcPrice * prediction[i];
-            ad.setBidPrice(price);
-            if (price > maxPrice) {
-                winner = ad;
-                maxPrice = price;
+        return Math.max(1, Math.min(MAX_SLOTS, input.getAppParams().getInt(SLOTS_PARAM, 1)));
+    }
+
+    /**
+     * Returns up to {@code slots} winners by descending bid price. Each landing page fills at
+     * most one slot, and ties keep the earlier ad, so a single slot picks the same winner as a
+     * plain maximum.
+     */
+    private AuctionResult runAuction(ScoredCandidates scored, int slots) {
+        Log.d(TAG, "runAuction() called.");
+        Metrics.Timer timer = Metrics.time(Metrics.STAGE_RUN_AUCTION);
+        try {
+            AdCatalog catalog = scored.mCandidates.mCatalog;
+            int[] ads = scored.mCandidates.mAds;
+            float[] prediction = scored.mScores;
+            if (VERBOSE_LOGGING) {
+                Log.v(TAG, "prediction result " + Arrays.toString(prediction));
+            }
+            if (prediction.length != ads.length) {
+                Log.e(TAG, "prediction result doesn't match ads list");
+            }
+            // The current winners, kept sorted by descending price; slots is small, so
+            // insertion into a flat array beats a heap of boxed entries.
+            int[] winners = new int[slots];
+            double[] prices = new double[slots];
+            int count = 0;
+            for (int i = 0; i < ads.length; i++) {
+                int ad = ads[i];
+                double price = catalog.mMaxCpc[ad] * prediction[i];
+                if (!(price > 0.0)) {
+                    continue;
+                }
+                int sameSlot = -1;
+                for (int j = 0; j < count; j++) {
+                    if (catalog.mLandingPages[winners[j]].equals(catalog.mLandingPages[ad])) {
+                        sameSlot = j;
+                        break;
+                    }
+                }
+                if (sameSlot >= 0) {
+                    if (!(price > prices[sameSlot])) {
+                        continue;
+                    }
+                    // Remove the weaker ad for this landing page, then insert the new one.
+                    count--;
+                    System.arraycopy(winners, sameSlot + 1, winners, sameSlot, count - sameSlot);
+                    System.arraycopy(prices, sameSlot + 1, prices, sameSlot, count - sameSlot);
+                } else if (count == slots) {
+                    if (!(price > prices[count - 1])) {
+                        continue;
+                    }
+                    count--;
+                }
+                // After any equal prices, so ties keep catalog order.
+                int pos = count;
+                while (pos > 0 && prices[pos - 1] < price) {
+                    winners[pos] = winners[pos - 1];
+                    prices[pos] = prices[pos - 1];
+                    pos--;
+                }
+                winners[pos] = ad;
+                prices[pos] = price;
+                count++;
             }
+            Metrics.increment(Metrics.COUNTER_ADS_SCORED, ads.length);
+            return new AuctionResult(
+                    catalog,
+                    Arrays.copyOf(winners, count),
+                    Arrays.copyOf(prices, count),
+                    scored.mDegraded);
+        } finally {
+            timer.close();
         }
-        return winner;
     }
 
     private ContentValues createLogRecord(String adId, double price, double score,
-            String landingPage) {
+            String landingPage, boolean degraded) {
         ContentValues result = new ContentValues();
         result.put(AD_ID_KEY, adId);
         result.put(BID_PRICE_KEY, price);
         result.put(AUCTION_SCORE_KEY, score);
         result.put(LANDING_PAGE_KEY, landingPage);
+        result.put(DEGRADED_KEY, degraded);
         return result;
     }
 
-    private ExecuteOutput buildResult(Ad ad) {
+    private ExecuteOutput buildResult(AuctionResult auction) {
         Log.d(TAG, "buildResult() called.");
-        ContentValues logData = createLogRecord(ad.mId, ad.mMaxCpcPrice, ad.mBidPrice,
-                ad.mLandingPage);
-        Log.i(
-                TAG,
-                String.format(
-                        "Log winning ad id %s max cpc price %.2f bid price %.2f, landing page %s",
-                        ad.mId, ad.mMaxCpcPrice, ad.mBidPrice, ad.mLandingPage));
-        return new ExecuteOutput.Builder()
-                .setRequestLogRecord(new RequestLogRecord.Builder().addRow(logData).build())
-                .setRenderingConfig(new RenderingConfig.Builder().addKey(ad.mId).build())
-                .build();
+        if (auction.mWinners.length == 0) {
+            throw new IllegalStateException("No ad won the auction.");
+        }
+        Metrics.Timer timer = Metrics.time(Metrics.STAGE_BUILD_RESULT);
+        try {
+            AdCatalog catalog = auction.mCatalog;
+            RequestLogRecord.Builder logBuilder = new RequestLogRecord.Builder();
+            RenderingConfig.Builder renderingBuilder = new RenderingConfig.Builder();
+            long now = System.currentTimeMillis();
+            // Row i of the request log and rendering key i always describe the same slot.
+            for (int i = 0; i < auction.mWinners.length; i++) {
+                int ad = auction.mWinners[i];
+                String id = catalog.mIds[ad];
+                double maxCpc = catalog.mMaxCpc[ad];
+                double bidPrice = auction.mBidPrices[i];
+                String landingPage = catalog.mLandingPages[ad];
+                sRenderHandoffCache.put(toWinner(catalog, ad), now);
+                logBuilder.addRow(
+                        createLogRecord(id, maxCpc, bidPrice, landingPage, auction.mDegraded));
+                renderingBuilder.addKey(id);
+                if (VERBOSE_LOGGING) {
+                    Log.v(
+                            TAG,
+                            String.format(
+                                    "Log winning ad id %s max cpc price %.2f bid price %.2f,"
+                                            + " landing page %s",
+                                    id, maxCpc, bidPrice, landingPage));
+                }
+            }
+            return new ExecuteOutput.Builder()
+                    .setRequestLogRecord(logBuilder.build())
+                    .setRenderingConfig(renderingBuilder.build())
+                    .build();
+        } finally {
+            timer.close();
+        }
     }
 
-    private static Feature convertStringToFeature(String value) {
-        BytesList.Builder bytesListBuilder = BytesList.newBuilder();
-        String nonNullValue = Strings.nullToEmpty(value);
-        bytesListBuilder.addValue(ByteString.copyFromUtf8(nonNullValue));
-        return Feature.newBuilder().setBytesList(bytesListBuilder.build()).build();
+    private static byte[] convertToMnistExample(String strExample) {
+        String[] splitExample = strExample.split(":", -1);
+        String[] splitPixels = splitExample[0].split(",", -1);
+        float[] pixels = new float[MNIST_NUM_PIXELS];
+        for (int count = 0; count < MNIST_NUM_PIXELS; count++) {
+            pixels[count] = Float.parseFloat(splitPixels[count]);
+        }
+        String label = splitExample[1];
+        return ExampleWriter.get()
+                .addFloats(FEATURE_X, pixels, MNIST_NUM_PIXELS)
+                .addInt64(FEATURE_Y, label.isEmpty() ? 0L : Long.parseLong(label))
+                .toByteArray();
     }
 
-    private static Feature convertLongToFeature(String value) {
-        long lValue = value.isEmpty() ? 0L : Long.parseLong(value);
-        return Feature.newBuilder()
-                .setInt64List(Int64List.newBuilder().addValue(lValue).build())
-                .build();
+    private static byte[] generateKerasExample() {
+        Random rand = ThreadLocalRandom.current();
+        float[] inputs = new float[MNIST_NUM_PIXELS];
+        for (int inputsIndex = 0; inputsIndex < MNIST_NUM_PIXELS; inputsIndex++) {
+            inputs[inputsIndex] = rand.nextFloat();
+        }
+        return ExampleWriter.get()
+                .addFloats(FEATURE_X, inputs, MNIST_NUM_PIXELS)
+                .addInt64(FEATURE_Y, rand.nextInt(2))
+                .toByteArray();
+    }
+
+    /**
+     * Returns true if the example rows of the remote data are serialized tf.Examples, as marked
+     * by the MakeTrainingExamples tool.
+     */
+    private boolean hasSerializedExamples() {
+        byte[] format = mRemoteData.get(EXAMPLE_FORMAT_KEY);
+        return format != null
+                && SERIALIZED_EXAMPLE_FORMAT.equals(new String(format, StandardCharsets.UTF_8));
     }
 
-    private static Feature convertFloatListToFeature(String value) {
-        String[] splitPixels = value.split(",", -1);
-        FloatList.Builder floatListBuilder = FloatList.newBuilder();
-        for (int count = 0; count < 784; count++) {
-            floatListBuilder.addValue(Float.parseFloat(splitPixels[count]));
+    /** Releases cached state that can be rebuilt, in response to a trim-memory callback. */
+    static void onTrimMemory(int level) {
+        sExampleCache.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            sAdCatalog = null;
+            // Cached results hold on to the catalog they were run against.
+            sAuctionCache.clear();
         }
-        return Feature.newBuilder().setFloatList(floatListBuilder.build()).build();
     }
 
-    private static Example convertToMnistExample(String strExample) {
-        String[] splitExample = strExample.split(":", -1);
-        Features.Builder featuresBuilder = Features.newBuilder();
-        featuresBuilder.putFeature("x", convertFloatListToFeature(splitExample[0]));
-        featuresBuilder.putFeature("y", convertLongToFeature(splitExample[1]));
-        return Example.newBuilder().setFeatures(featuresBuilder.build()).build();
+    /** Converts a stored example row into a serialized tf.Example. */
+    private interface ExampleConverter {
+        byte[] convert(byte[] value);
     }
 
-    private static Example convertToExample(String serializedExample) {
-        String[] splitExample = serializedExample.split(",", -1);
-        Features.Builder featuresBuilder = Features.newBuilder();
-        featuresBuilder.putFeature("clicked", convertLongToFeature(splitExample[0]));
+    /**
+     * Returns a source that reads row {@code example<position + 1>} from the remote data and
+     * converts it, unless the rows are already serialized, caching the result across calls for
+     * the current catalog version.
+     */
+    private TrainingExamplePager.ExampleSource getStoredExampleSource(
+            String format, ExampleConverter converter) {
+        long version = sCatalogVersion.get();
+        boolean serialized = hasSerializedExamples();
+        return position -> {
+            String key = "example" + (position + 1);
+            // The same row converts differently per format, so the format is part of the key.
+            String cacheKey = format + "/" + key;
+            byte[] example = sExampleCache.get(cacheKey, version, System.currentTimeMillis());
+            if (example != null) {
+                return example;
+            }
+            byte[] value = mRemoteData.get(key);
+            if (value == null) {
+                return null;
+            }
+            example = serialized ? value : converter.convert(value);
+            sExampleCache.put(cacheKey, version, example, System.currentTimeMillis());
+            return example;
+        };
+    }
 
-        int count = 1;
-        for (; count < 14; count++) {
-            featuresBuilder.putFeature(
-                    String.format("int-feature-%d", count),
-                    convertLongToFeature(splitExample[count]));
-        }
-        for (; count < 40; count++) {
-            featuresBuilder.putFeature(
-                    String.format("categorical-feature-%d", count),
-                    convertStringToFeature(splitExample[count]));
+    /**
+     * Adds a page of the population's examples to {@code resultBuilder}. Only mnist reads its
+     * rows in order and so resumes from the token; criteo samples random rows and keras
+     * generates random examples, so their tokens only count the examples emitted.
+     */
+    private int addTrainingExamplePage(
+            String populationName,
+            byte[] resumptionToken,
+            TrainingExamplesOutput.Builder resultBuilder)
+            throws InterruptedException, ExecutionException {
+        Random rand = new Random();
+        if (populationName.contains("criteo")) {
+            // Rows that fail to read or convert are skipped, not replaced.
+            TrainingExamplePager.ExampleSource rows =
+                    getStoredExampleSource("criteo", CriteoExampleParser::serialize);
+            return TrainingExamplePager.addPage(
+                    position -> rows.get(ThreadLocalRandom.current().nextInt(CRITEO_NUM_ROWS)),
+                    rand.nextInt(CRITEO_MAX_EXAMPLES_PER_CALL) + 1,
+                    /* stopAtFailure */ false,
+                    resumptionToken,
+                    resultBuilder,
+                    sTrainingExecutor,
+                    TRAINING_PARALLELISM);
+        } else if (populationName.contains("keras")) {
+            return TrainingExamplePager.addPage(
+                    position -> generateKerasExample(),
+                    rand.nextInt(KERAS_MAX_EXAMPLES_PER_CALL),
+                    /* stopAtFailure */ false,
+                    resumptionToken,
+                    resultBuilder,
+                    sTrainingExecutor,
+                    TRAINING_PARALLELISM);
+        } else if (populationName.contains("mnist")) {
+            TrainingExamplePager.ExampleSource rows =
+                    getStoredExampleSource(
+                            "mnist",
+                            value ->
+                                    convertToMnistExample(
+                                            new String(value, StandardCharsets.UTF_8)));
+            // The first row that fails to read or convert ends the page.
+            return TrainingExamplePager.addPage(
+                    position -> position < MNIST_NUM_ROWS ? rows.get(position) : null,
+                    MNIST_NUM_ROWS,
+                    /* stopAtFailure */ true,
+                    resumptionToken,
+                    resultBuilder,
+                    sTrainingExecutor,
+                    TRAINING_PARALLELISM);
         }
-        return Example.newBuilder().setFeatures(featuresBuilder.build()).build();
+        return 0;
     }
 
     private void handleOnTrainingExamples(
             @NonNull TrainingExamplesInput input,
             @NonNull OutcomeReceiver<TrainingExamplesOutput, IsolatedServiceException> receiver) {
         TrainingExamplesOutput.Builder resultBuilder = new TrainingExamplesOutput.Builder();
-
-        if (input.getPopulationName().contains("criteo")) {
-            HashMap<Integer, String> exampleCache = new HashMap<>();
-            Random rand = new Random();
-            int numExample = rand.nextInt(10) + 1;
-            Log.d(TAG, String.format("onTrainingExample() generates %d examples.", numExample));
-            for (int count = 0; count < numExample; count++) {
-                int key = rand.nextInt(100) + 1;
-                Example example;
-                if (exampleCache.containsKey(key)) {
-                    example = convertToExample(exampleCache.get(key));
-                } else {
-                    try {
-                        String value =
-                            new String(
-                                mRemoteData.get(String.format("example%d", key)),
-                                StandardCharsets.UTF_8);
-                        exampleCache.put(key, value);
-                        example = convertToExample(value);
-                    } catch (Throwable e) {
-                        Log.w(TAG, "failure getting example from remote data store", e);
-                        continue;
-                    }
-                }
-                TrainingExampleRecord record =
-                        new TrainingExampleRecord.Builder()
-                                .setTrainingExample(example.toByteArray())
-                                .setResumptionToken(String.format("token%d", count).getBytes())
-                                .build();
-                resultBuilder.addTrainingExampleRecord(record);
-            }
-        } else if (input.getPopulationName().contains("keras")) {
-            Random rand = new Random();
-            int numExample = rand.nextInt(400);
-            for (int exampleCount = 0; exampleCount < numExample; exampleCount++) {
-                ArrayList<Float> inputsValue = new ArrayList<Float>();
-                for (int inputsIndex = 0; inputsIndex < 784; inputsIndex++) {
-                    inputsValue.add(rand.nextFloat());
-                }
-                Feature inputsFeature =
-                        Feature.newBuilder()
-                            .setFloatList(FloatList.newBuilder().addAllValue(inputsValue))
-                            .build();
-                Feature outputsFeature =
-                        Feature.newBuilder()
-                             .setInt64List(Int64List.newBuilder().addValue(rand.nextInt(2)))
-                            .build();
-                Example example = Example.newBuilder().setFeatures(
-                        Features.newBuilder()
-                            .putFeature("x", inputsFeature)
-                            .putFeature("y", outputsFeature)
-                            .build())
-                        .build();
-                TrainingExampleRecord record =
-                        new TrainingExampleRecord.Builder()
-                                .setTrainingExample(example.toByteArray())
-                                .setResumptionToken(
-                                                String.format("token%d", exampleCount).getBytes())
-                                .build();
-                resultBuilder.addTrainingExampleRecord(record);
-            }
-        } else if (input.getPopulationName().contains("mnist")) {
-            for (int count = 1; count < 300; count++) {
-                try {
-                    Example example =
-                            convertToMnistExample(
-                                    new String(
-                                            mRemoteData.get(String.format("example%d", count)),
-                                            StandardCharsets.UTF_8));
-                    TrainingExampleRecord record =
-                            new TrainingExampleRecord.Builder()
-                                    .setTrainingExample(example.toByteArray())
-                                    .setResumptionToken(String.format("token%d", count).getBytes())
-                                    .build();
-                    resultBuilder.addTrainingExampleRecord(record);
-                } catch (Exception e) {
-                    break;
-                }
-            }
+        try {
+            int count =
+                    addTrainingExamplePage(
+                            input.getPopulationName(), input.getResumptionToken(), resultBuilder);
+            Log.d(TAG, "onTrainingExample() generates " + count + " examples.");
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(TAG, "handleOnTrainingExamples() failed", e);
+            receiver.onError(
+                    new IsolatedServiceException(ERROR_CODE_WORKER_ON_TRAINING_EXAMPLES_ERROR));
+            return;
         }
-
         receiver.onResult(resultBuilder.build());
     }
 
@@ -497,6 +894,16 @@ public class SampleHandler implements IsolatedWorker {
                 receiver.onError(new IsolatedServiceException(ERROR_CODE_INJECT_ERROR));
                 return;
             }
+            if (input != null
+                    && input.getAppParams() != null
+                    && input.getAppParams().getString("dump_metrics") != null) {
+                Log.i(Metrics.TAG, Metrics.dump());
+                if (input.getAppParams().getString("dump_metrics").equals("reset")) {
+                    Metrics.reset();
+                }
+                receiver.onResult(new ExecuteOutput.Builder().build());
+                return;
+            }
             if (input != null
                     && input.getAppParams() != null
                     && input.getAppParams().getString("schedule_training") != null) {
@@ -563,21 +970,14 @@ public class SampleHandler implements IsolatedWorker {
                 }
                 receiver.onResult(handleConversion(input));
             } else {
-                ListenableFuture<List<Ad>> matchAdsFuture =
-                        FluentFuture.from(readAds(mRemoteData))
-                                .transform(ads -> matchAds(ads, input), sBackgroundExecutor);
-                ListenableFuture<InferenceOutput> inferenceFuture =
-                        FluentFuture.from(matchAdsFuture)
-                                .transformAsync(ads -> runInference(ads), sBackgroundExecutor);
+                int slots = getSlotCount(input);
+                // Log rows are built per request, even when the auction result is shared.
                 ListenableFuture<ExecuteOutput> resultFuture =
-                        Futures.whenAllComplete(matchAdsFuture, inferenceFuture)
-                                .call(
-                                        () ->
-                                                buildResult(
-                                                        runAuction(
-                                                                matchAdsFuture.get(),
-                                                                inferenceFuture.get())),
-                                        sBackgroundExecutor);
+                        FluentFuture.from(readAds(mRemoteData))
+                                .transformAsync(
+                                        catalog -> getAuctionResult(catalog, input, slots),
+                                        MoreExecutors.directExecutor())
+                                .transform(auction -> buildResult(auction), sBackgroundExecutor);
 
                 var unused =
                         FluentFuture.from(resultFuture)
@@ -603,10 +1003,11 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
-    private ListenableFuture<String> getImpressionTrackingUrl() {
+    private ListenableFuture<String> getImpressionTrackingUrl(int row) {
         try {
             PersistableBundle eventParams = new PersistableBundle();
             eventParams.putInt(EVENT_TYPE_KEY, EVENT_TYPE_IMPRESSION);
+            eventParams.putInt(ROW_INDEX_KEY, row);
             String url =
                     mEventUrlProvider
                             .createEventTrackingUrlWithResponse(
@@ -618,10 +1019,11 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
-    private ListenableFuture<String> getClickTrackingUrl(String landingPage) {
+    private ListenableFuture<String> getClickTrackingUrl(String landingPage, int row) {
         try {
             PersistableBundle eventParams = new PersistableBundle();
             eventParams.putInt(EVENT_TYPE_KEY, EVENT_TYPE_CLICK);
+            eventParams.putInt(ROW_INDEX_KEY, row);
             String url =
                     mEventUrlProvider
                             .createEventTrackingUrlWithRedirect(eventParams, Uri.parse(landingPage))
@@ -632,37 +1034,72 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
-    private ListenableFuture<Ad> readAd(String id, KeyValueStore remoteData) {
+    /** Reads and parses the single ad {@code id}, for rendering without a handoff. */
+    private ListenableFuture<RenderHandoffCache.Winner> readAd(
+            String id, KeyValueStore remoteData, long catalogVersion) {
         try {
-            return Futures.immediateFuture(parseAd(id, remoteData.get(id)));
+            AdCatalog.Builder builder = new AdCatalog.Builder();
+            if (!builder.add(id, remoteData.get(id))) {
+                throw new IllegalArgumentException("Ad " + id + " could not be read.");
+            }
+            return Futures.immediateFuture(
+                    toWinner(builder.build(catalogVersion, System.currentTimeMillis()), 0));
         } catch (Exception e) {
             return Futures.immediateFailedFuture(e);
         }
     }
 
-    private RenderOutput buildRenderOutput(Ad ad, String impressionUrl, String clickUrl) {
-        if (ad.mTemplateId != null) {
+    private static RenderHandoffCache.Winner toWinner(AdCatalog catalog, int ad) {
+        return new RenderHandoffCache.Winner(
+                catalog.mIds[ad],
+                catalog.mLandingPages[ad],
+                catalog.mTexts[ad],
+                catalog.getTemplateId(ad),
+                catalog.mVersion);
+    }
+
+    /** Returns the render fields of ad {@code id}, reading the ad only if it was not handed off. */
+    private ListenableFuture<RenderHandoffCache.Winner> getWinner(String id) {
+        long catalogVersion = sCatalogVersion.get();
+        RenderHandoffCache.Winner winner =
+                sRenderHandoffCache.get(id, catalogVersion, System.currentTimeMillis());
+        if (winner != null) {
+            return Futures.immediateFuture(winner);
+        }
+        return readAd(id, mRemoteData, catalogVersion);
+    }
+
+    private RenderOutput buildRenderOutput(List<RenderedSlot> slots) {
+        RenderedSlot first = slots.get(0);
+        if (slots.size() == 1 && first.mAd.mTemplateId != null) {
             PersistableBundle templateParams = new PersistableBundle();
-            templateParams.putString("impressionUrl", impressionUrl);
-            templateParams.putString("clickUrl", clickUrl);
-            templateParams.putString("adText", ad.mText);
+            templateParams.putString("impressionUrl", first.mImpressionUrl);
+            templateParams.putString("clickUrl", first.mClickUrl);
+            templateParams.putString("adText", first.mAd.mText);
             return new RenderOutput.Builder()
-                    .setTemplateId(ad.mTemplateId)
+                    .setTemplateId(first.mAd.mTemplateId)
                     .setTemplateParams(templateParams)
                     .build();
-        } else {
-            String content =
-                    "<img src=\""
-                            + impressionUrl
-                            + "\" alt=\"\">\n"
-                            + "<a href=\""
-                            + clickUrl
-                            + "\">"
-                            + ad.mText
-                            + "</a>";
-            Log.d(TAG, "content: " + content);
-            return new RenderOutput.Builder().setContent(content).build();
         }
+        // A template renders a single ad, so several slots are always rendered as markup.
+        StringBuilder content = new StringBuilder();
+        for (RenderedSlot slot : slots) {
+            if (content.length() > 0) {
+                content.append('\n');
+            }
+            content.append("<img src=\"")
+                    .append(slot.mImpressionUrl)
+                    .append("\" alt=\"\">\n")
+                    .append("<a href=\"")
+                    .append(slot.mClickUrl)
+                    .append("\">")
+                    .append(slot.mAd.mText)
+                    .append("</a>");
+        }
+        if (VERBOSE_LOGGING) {
+            Log.v(TAG, "content: " + content);
+        }
+        return new RenderOutput.Builder().setContent(content.toString()).build();
     }
 
     private ExecuteOutput handleConversion(ExecuteInput input) {
@@ -672,27 +1109,9 @@ public class SampleHandler implements IsolatedWorker {
             Log.d(TAG, "SourceAdId should not be empty");
             return builder.build();
         }
-        long now = System.currentTimeMillis();
-        List<EventLogRecord> logRecords =
-                mLogReader.getJoinedEvents(
-                        Instant.ofEpochMilli(now - 24 * 60 * 60 * 1000), Instant.ofEpochMilli(now));
-        EventLogRecord found = null;
         // Attribute conversion to most recent impression or click.
-        for (EventLogRecord ev : logRecords) {
-            RequestLogRecord req = ev.getRequestLogRecord();
-            if (req == null
-                    || req.getRows() == null
-                    || req.getRows().size() <= ev.getRowIndex()
-                    || req.getRows().get(ev.getRowIndex()) == null) {
-                continue;
-            }
-            String reqAdId = (String) req.getRows().get(ev.getRowIndex()).get(AD_ID_KEY);
-            if (adId.equals(reqAdId)) {
-                if (found == null || found.getTime().compareTo(ev.getTime()) < 0) {
-                    found = ev;
-                }
-            }
-        }
+        EventLogRecord found =
+                sAdIdAttributionIndex.find(mLogReader, adId, System.currentTimeMillis());
         if (found != null) {
             ContentValues values = new ContentValues();
             values.put(SOURCE_TYPE_KEY, found.getType());
@@ -715,28 +1134,16 @@ public class SampleHandler implements IsolatedWorker {
             @NonNull OutcomeReceiver<RenderOutput, IsolatedServiceException> receiver) {
         try {
             Log.d(TAG, "handleOnRender() started.");
-            String id = input.getRenderingConfig().getKeys().get(0);
-            var adFuture = readAd(id, mRemoteData);
-            var impUrlFuture = getImpressionTrackingUrl();
-            var clickUrlFuture =
-                    FluentFuture.from(adFuture)
-                            .transformAsync(
-                                    ad -> getClickTrackingUrl(ad.mLandingPage),
-                                    sBackgroundExecutor);
+            List<String> keys = input.getRenderingConfig().getKeys();
+            List<ListenableFuture<RenderedSlot>> slotFutures = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                slotFutures.add(renderSlot(keys.get(i), i));
+            }
             var unused =
-                    FluentFuture.from(
-                                    Futures.whenAllComplete(adFuture, impUrlFuture, clickUrlFuture)
-                                            .call(
-                                                    () ->
-                                                            buildRenderOutput(
-                                                                    Futures.getDone(adFuture),
-                                                                    Futures.getDone(impUrlFuture),
-                                                                    Futures.getDone(
-                                                                            clickUrlFuture)),
-                                                    MoreExecutors.directExecutor()))
+                    FluentFuture.from(Futures.allAsList(slotFutures))
                             .transform(
-                                    result -> {
-                                        receiver.onResult(result);
+                                    slots -> {
+                                        receiver.onResult(buildRenderOutput(slots));
                                         return null;
                                     },
                                     MoreExecutors.directExecutor())
@@ -756,6 +1163,25 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
+    /** Resolves the ad and tracking URLs of the slot logged in request log row {@code row}. */
+    private ListenableFuture<RenderedSlot> renderSlot(String id, int row) {
+        var adFuture = getWinner(id);
+        var impUrlFuture = getImpressionTrackingUrl(row);
+        var clickUrlFuture =
+                FluentFuture.from(adFuture)
+                        .transformAsync(
+                                ad -> getClickTrackingUrl(ad.mLandingPage, row),
+                                sBackgroundExecutor);
+        return Futures.whenAllComplete(adFuture, impUrlFuture, clickUrlFuture)
+                .call(
+                        () ->
+                                new RenderedSlot(
+                                        Futures.getDone(adFuture),
+                                        Futures.getDone(impUrlFuture),
+                                        Futures.getDone(clickUrlFuture)),
+                        MoreExecutors.directExecutor());
+    }
+
     void handleOnWebViewEvent(
             @NonNull EventInput input,
             @NonNull OutcomeReceiver<EventOutput, IsolatedServiceException> receiver) {
@@ -767,13 +1193,18 @@ public class SampleHandler implements IsolatedWorker {
                 receiver.onResult(new EventOutput.Builder().build());
                 return;
             }
+            // URLs minted before multi-slot rendering carry no row and refer to row 0.
+            int rowIndex = Math.max(0, eventParams.getInt(ROW_INDEX_KEY, 0));
+            if (eventType == EVENT_TYPE_IMPRESSION || eventType == EVENT_TYPE_CLICK) {
+                invalidateCachedAuctions(input.getRequestLogRecord(), rowIndex);
+            }
             ContentValues logData = null;
             if (eventType == EVENT_TYPE_CLICK) {
                 double bidPrice = 0.0;
                 if (input.getRequestLogRecord() != null
                         && input.getRequestLogRecord().getRows() != null
-                        && !input.getRequestLogRecord().getRows().isEmpty()) {
-                    ContentValues row = input.getRequestLogRecord().getRows().get(0);
+                        && rowIndex < input.getRequestLogRecord().getRows().size()) {
+                    ContentValues row = input.getRequestLogRecord().getRows().get(rowIndex);
                     Double data = row.getAsDouble(BID_PRICE_KEY);
                     if (data != null) {
                         bidPrice = data.doubleValue();
@@ -787,7 +1218,7 @@ public class SampleHandler implements IsolatedWorker {
                     new EventOutput.Builder()
                             .setEventLogRecord(
                                     new EventLogRecord.Builder()
-                                            .setRowIndex(0)
+                                            .setRowIndex(rowIndex)
                                             .setType(eventType)
                                             .setData(logData)
                                             .build())
@@ -799,6 +1230,20 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
+    /**
+     * Drops the cached auctions won by the ad logged in {@code rowIndex}, so that an ad the user
+     * has just seen or clicked is auctioned again rather than served from the cache.
+     */
+    private static void invalidateCachedAuctions(RequestLogRecord record, int rowIndex) {
+        if (record == null || record.getRows() == null || rowIndex >= record.getRows().size()) {
+            return;
+        }
+        String adId = record.getRows().get(rowIndex).getAsString(AD_ID_KEY);
+        if (adId != null) {
+            sAuctionCache.invalidateAd(adId);
+        }
+    }
+
     void handleOnWebTrigger(
             @NonNull WebTriggerInput input,
             @NonNull OutcomeReceiver<WebTriggerOutput, IsolatedServiceException> receiver) {
@@ -806,34 +1251,17 @@ public class SampleHandler implements IsolatedWorker {
             Log.d(TAG, "handleOnWebTrigger() started.");
             String destinationUrl = input.getDestinationUrl().toString();
             String appPackageName = input.getAppPackageName();
-            Log.d(TAG, "WebTriggerInput dest url: " + destinationUrl
-                    + ", appPackageName: " + appPackageName);
+            if (VERBOSE_LOGGING) {
+                Log.v(TAG, "WebTriggerInput dest url: " + destinationUrl
+                        + ", appPackageName: " + appPackageName);
+            }
             byte[] data = input.getData();
 
-            long now = System.currentTimeMillis();
-            List<EventLogRecord> logRecords =
-                    mLogReader.getJoinedEvents(
-                            Instant.ofEpochMilli(now - 24 * 60 * 60 * 1000),
-                            Instant.ofEpochMilli(now));
-            EventLogRecord found = null;
             // Attribute web conversion to most recent impression or click
             // with matching landing page.
-            for (EventLogRecord ev : logRecords) {
-                RequestLogRecord req = ev.getRequestLogRecord();
-                if (req == null
-                        || req.getRows() == null
-                        || req.getRows().size() <= ev.getRowIndex()
-                        || req.getRows().get(ev.getRowIndex()) == null) {
-                    continue;
-                }
-                String landingPage = (String) req.getRows().get(ev.getRowIndex())
-                        .get(LANDING_PAGE_KEY);
-                if (isLandingPageMatch(landingPage, destinationUrl)) {
-                    if (found == null || found.getTime().compareTo(ev.getTime()) < 0) {
-                        found = ev;
-                    }
-                }
-            }
+            EventLogRecord found =
+                    sLandingPageIndex.find(
+                            mLogReader, destinationUrl, System.currentTimeMillis());
 
             var builder = new WebTriggerOutput.Builder();
             if (found != null) {
@@ -858,88 +1286,6 @@ public class SampleHandler implements IsolatedWorker {
         }
     }
 
-    boolean isLandingPageMatch(String requestRecordLandingPage, String conversionDestUrl) {
-        Log.d(TAG, "requestRecordLandingPage: " + requestRecordLandingPage);
-        Log.d(TAG, "conversionDestUrl: " + conversionDestUrl);
-        return requestRecordLandingPage != null
-                && conversionDestUrl != null
-                && requestRecordLandingPage.equals(conversionDestUrl);
-    }
-
-    boolean isInstalledAppFound(CuckooFilter<String> filter) {
-        if (mUserData == null) {
-            Log.i(TAG, "No userdata.");
-            return false;
-        }
-
-        if (mUserData.getAppInfos() == null || mUserData.getAppInfos().isEmpty()) {
-            Log.i(TAG, "No installed apps.");
-            return false;
-        }
-
-        if (filter == null) {
-            return false;
-        }
-
-        for (String app : mUserData.getAppInfos().keySet()) {
-            AppInfo value = mUserData.getAppInfos().get(app);
-            if (value != null && value.isInstalled() && filter.contains(app)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    boolean isInstalledAppFound(List<String> apps) {
-        if (mUserData == null) {
-            Log.i(TAG, "No userdata.");
-            return false;
-        }
-
-        if (mUserData.getAppInfos() == null || mUserData.getAppInfos().isEmpty()) {
-            Log.i(TAG, "No installed apps.");
-            return false;
-        }
-
-        if (apps == null || apps.isEmpty()) {
-            return false;
-        }
-
-        for (String app : mUserData.getAppInfos().keySet()) {
-            if (apps.contains(app)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    boolean isBlockedAd(Ad ad) {
-        return isInstalledAppFound(ad.mExcludeFilter) || isInstalledAppFound(ad.mExcludes);
-    }
-
-    private List<String> getFilteredKeys(KeyValueStore data) {
-        Log.d(TAG, "getFilteredKeys() called.");
-        List<String> filteredKeys = new ArrayList<String>();
-        // Add all keys from the file into the list
-        for (String key : data.keySet()) {
-            if (key != null && data.get(key) != null) {
-                if (key.startsWith("ad")) {
-                    Ad ad = parseAd(key, data.get(key));
-                    if (ad != null && !isBlockedAd(ad)) {
-                        filteredKeys.add(key);
-                    }
-                } else if (key.startsWith("template")
-                        || key.startsWith("example")
-                        || key.startsWith("model")) {
-                    filteredKeys.add(key);
-                }
-            }
-        }
-        return filteredKeys;
-    }
-
     private static ThreadFactory createThreadFactory(
             final String name, final int priority, final Optional<StrictMode.ThreadPolicy> policy) {
         return new ThreadFactoryBuilder()
@@ -966,29 +1312,34 @@ public class SampleHandler implements IsolatedWorker {
                 .build();
     }
 
-    private ListenableFuture<InferenceOutput> runInference(List<Ad> ads) {
+    private ListenableFuture<InferenceOutput> runInference(Candidates candidates) {
         InferenceInput.Params params =
                 new InferenceInput.Params.Builder(mRemoteData, "model1").build();
         InferenceInput input =
                 new InferenceInput.Builder(
-                                params, generateInputData(ads), generateInferenceOutput(ads.size()))
+                                params,
+                                generateInputData(candidates),
+                                generateInferenceOutput(candidates.mAds.length))
                         .build();
         Log.d(TAG, "runInference() called.");
         return CallbackToFutureAdapter.getFuture(
                 completer -> {
+                    Metrics.Timer timer = Metrics.timeAsync(Metrics.STAGE_RUN_INFERENCE);
                     mModelManager.run(
                             input,
                             sBackgroundExecutor,
                             new OutcomeReceiver<>() {
                                 @Override
                                 public void onResult(InferenceOutput result) {
+                                    timer.close();
                                     completer.set(result);
                                 }
 
                                 @Override
                                 public void onError(Exception e) {
+                                    timer.close();
                                     Log.e(TAG, "modelManager.run() exception", e);
-                                    completer.set(null);
+                                    completer.setException(e);
                                 }
                             });
                     // Used only for debugging.
@@ -996,14 +1347,11 @@ public class SampleHandler implements IsolatedWorker {
                 });
     }
 
-    private Object[] generateInputData(List<Ad> ads) {
-        int numExample = ads.size();
-        float[][] input = new float[numExample][100];
+    private Object[] generateInputData(Candidates candidates) {
+        int numExample = candidates.mAds.length;
+        float[][] input = new float[numExample][AdCatalog.EMBEDDING_SIZE];
         for (int i = 0; i < numExample; i++) {
-            Float[] features = ads.get(i).mEmbeddingFeatures;
-            for (int j = 0; j < 100; j++) {
-                input[i][j] = features[j];
-            }
+            candidates.mCatalog.copyEmbedding(candidates.mAds[i], input[i]);
         }
         return new Object[] {input};
     }
@@ -1015,131 +1363,77 @@ public class SampleHandler implements IsolatedWorker {
         return new InferenceOutput.Builder().setDataOutputs(outputMap).build();
     }
 
-    static class Ad {
-        final String mId;
-        final double mMaxCpcPrice;
-        final List<String> mTargetKeywords;
-        final List<String> mTargetApps;
-        final List<String> mExcludes;
-        final String mLandingPage;
-        final String mText;
-        final String mTemplateId;
-        final CuckooFilter<String> mTargetKeywordFilter;
-        final CuckooFilter<String> mTargetAppFilter;
-        final CuckooFilter<String> mExcludeFilter;
-        final Float[] mEmbeddingFeatures;
-        double mBidPrice;
-
-        Ad(
-                String id,
-                double price,
-                List<String> targetKeywords,
-                List<String> targetApps,
-                List<String> excludes,
-                String landingPage,
-                String text,
-                String templateId,
-                CuckooFilter<String> targetKeywordFilter,
-                CuckooFilter<String> targetAppFilter,
-                CuckooFilter<String> excludeFilter,
-                Float[] embeddingFeatures) {
-            mId = id;
-            mMaxCpcPrice = price;
-            mTargetKeywords = targetKeywords;
-            mTargetApps = targetApps;
-            mExcludes = excludes;
-            mLandingPage = landingPage;
-            mText = text;
-            mTemplateId = templateId;
-            mTargetKeywordFilter = targetKeywordFilter;
-            mTargetAppFilter = targetAppFilter;
-            mExcludeFilter = excludeFilter;
-            mEmbeddingFeatures = embeddingFeatures;
-        }
+    /** The matched ads of one request, as ordinals into a catalog. */
+    private static final class Candidates {
+        final AdCatalog mCatalog;
+        final int[] mAds;
 
-        public void setBidPrice(double bidPrice) {
-            mBidPrice = bidPrice;
+        Candidates(AdCatalog catalog, int[] ads) {
+            mCatalog = catalog;
+            mAds = ads;
         }
     }
 
-    private static void readJsonArray(JsonReader reader, List<String> values) throws IOException {
-        reader.beginArray();
-        while (reader.hasNext()) {
-            String value = reader.nextString();
-            if (value != null && !value.isEmpty()) {
-                values.add(value);
-            }
+    /** Matched ads with a predicted CTR for each, in the same order. */
+    private static final class ScoredCandidates {
+        final Candidates mCandidates;
+        final float[] mScores;
+        // Whether the scores are the prior CTR rather than the model's predictions.
+        final boolean mDegraded;
+
+        ScoredCandidates(Candidates candidates, float[] scores, boolean degraded) {
+            mCandidates = candidates;
+            mScores = scores;
+            mDegraded = degraded;
         }
-        reader.endArray();
     }
 
-    Ad parseAd(String id, byte[] data) {
-        if (id == null || data == null) {
-            return null;
+    /** Winning ads and their bid prices, best first. */
+    static final class AuctionResult {
+        final AdCatalog mCatalog;
+        final int[] mWinners;
+        final double[] mBidPrices;
+        final boolean mDegraded;
+
+        AuctionResult(AdCatalog catalog, int[] winners, double[] bidPrices, boolean degraded) {
+            mCatalog = catalog;
+            mWinners = winners;
+            mBidPrices = bidPrices;
+            mDegraded = degraded;
         }
-        String dataStr = new String(data, StandardCharsets.UTF_8);
-        Log.d(TAG, "parseAd: " + id + " " + dataStr);
-        // TODO(b/263493591): Parse JSON ad.
-        try (JsonReader reader = new JsonReader(new StringReader(dataStr))) {
-            reader.beginObject();
-            double maxCpcPrice = 0.0;
-            ArrayList<String> targetKeywords = new ArrayList<>();
-            ArrayList<String> targetApps = new ArrayList<>();
-            ArrayList<String> excludes = new ArrayList<>();
-            String landingPage = "";
-            String text = "Click Here!";
-            String templateId = null;
-            CuckooFilter<String> targetKeywordFilter = null;
-            CuckooFilter<String> targetAppFilter = null;
-            CuckooFilter<String> excludeFilter = null;
-            Float[] embeddingFeatures = null;
-            while (reader.hasNext()) {
-                String name = reader.nextName();
-                if (name.equals("max_cpc")) {
-                    maxCpcPrice = reader.nextDouble();
-                } else if (name.equals("keywords")) {
-                    readJsonArray(reader, targetKeywords);
-                } else if (name.equals("apps")) {
-                    readJsonArray(reader, targetApps);
-                } else if (name.equals("excludes")) {
-                    readJsonArray(reader, excludes);
-                } else if (name.equals("landingPage")) {
-                    landingPage = reader.nextString();
-                } else if (name.equals("text")) {
-                    text = reader.nextString();
-                } else if (name.equals("template")) {
-                    templateId = reader.nextString();
-                } else if (name.equals("keywordFilter")) {
-                    targetKeywordFilter = CuckooFilterUtil.createCuckooFilter(reader.nextString());
-                } else if (name.equals("appFilter")) {
-                    targetAppFilter = CuckooFilterUtil.createCuckooFilter(reader.nextString());
-                } else if (name.equals("excludeFilter")) {
-                    excludeFilter = CuckooFilterUtil.createCuckooFilter(reader.nextString());
-                } else if (name.equals("embedding_features")) {
-                    String[] featuresStr = reader.nextString().split(",", -1);
-                    embeddingFeatures =
-                            Arrays.stream(featuresStr).map(Float::parseFloat).toArray(Float[]::new);
-                } else {
-                    reader.skipValue();
+
+        /** Returns the winners of the first {@code slots} slots. */
+        AuctionResult firstSlots(int slots) {
+            if (slots >= mWinners.length) {
+                return this;
+            }
+            return new AuctionResult(
+                    mCatalog,
+                    Arrays.copyOf(mWinners, slots),
+                    Arrays.copyOf(mBidPrices, slots),
+                    mDegraded);
+        }
+
+        boolean hasWinner(String id) {
+            for (int ad : mWinners) {
+                if (mCatalog.mIds[ad].equals(id)) {
+                    return true;
                 }
             }
-            reader.endObject();
-            return new Ad(
-                    id,
-                    maxCpcPrice,
-                    targetKeywords,
-                    targetApps,
-                    excludes,
-                    landingPage,
-                    text,
-                    templateId,
-                    targetKeywordFilter,
-                    targetAppFilter,
-                    excludeFilter,
-                    embeddingFeatures);
-        } catch (Exception e) {
-            Log.e(TAG, "parseAd() failed.", e);
-            return null;
+            return false;
+        }
+    }
+
+    /** A winner with the tracking URLs minted for its slot. */
+    private static final class RenderedSlot {
+        final RenderHandoffCache.Winner mAd;
+        final String mImpressionUrl;
+        final String mClickUrl;
+
+        RenderedSlot(RenderHandoffCache.Winner ad, String impressionUrl, String clickUrl) {
+            mAd = ad;
+            mImpressionUrl = impressionUrl;
+            mClickUrl = clickUrl;
         }
     }
 
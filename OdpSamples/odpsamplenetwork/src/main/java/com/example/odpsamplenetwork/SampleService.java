@@ -34,4 +34,10 @@ public class SampleService extends IsolatedService {
                 getLogReader(requestToken),
                 getModelManager(requestToken));
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        SampleHandler.onTrimMemory(level);
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.HashMap;
+
+/**
+ * Shares one in-flight computation among concurrent callers that ask for the same key.
+ *
+ * <p>The first caller for a key starts the work and callers arriving before it completes get
+ * the same result. Nothing is kept once the work completes, so the next caller starts it again.
+ * Every caller gets its own view of the result, so one caller cancelling does not cancel the
+ * work for the others.
+ */
+final class SingleFlight<K, V> {
+    private final String mCoalescedCounter;
+    private final HashMap<K, ListenableFuture<V>> mInFlight = new HashMap<>();
+
+    /** @param coalescedCounter the counter incremented for each caller that joins a flight */
+    SingleFlight(String coalescedCounter) {
+        mCoalescedCounter = coalescedCounter;
+    }
+
+    /**
+     * Returns the result of the flight in progress for {@code key}, or starts one by calling
+     * {@code work} on the caller's thread.
+     */
+    ListenableFuture<V> get(K key, AsyncCallable<V> work) {
+        SettableFuture<V> flight;
+        synchronized (this) {
+            ListenableFuture<V> inFlight = mInFlight.get(key);
+            if (inFlight != null) {
+                Metrics.increment(mCoalescedCounter, 1);
+                return Futures.nonCancellationPropagating(inFlight);
+            }
+            flight = SettableFuture.create();
+            mInFlight.put(key, flight);
+        }
+        flight.addListener(() -> remove(key, flight), MoreExecutors.directExecutor());
+        flight.setFuture(Futures.submitAsync(work, MoreExecutors.directExecutor()));
+        return Futures.nonCancellationPropagating(flight);
+    }
+
+    private synchronized void remove(K key, ListenableFuture<V> flight) {
+        mInFlight.remove(key, flight);
+    }
+}
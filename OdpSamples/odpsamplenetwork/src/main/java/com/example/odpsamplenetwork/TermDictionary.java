@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.KeyValueStore;
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The global dictionary of targeting terms, stored under {@link #KEY} as a JSON array whose
+ * string at index {@code i} is the term with id {@code i}.
+ *
+ * <p>Ads written against it list sorted term ids in {@code keywordIds}, {@code appIds} and
+ * {@code excludeIds} instead of repeating the term strings in {@code keywords}, {@code apps}
+ * and {@code excludes}.
+ */
+final class TermDictionary {
+    static final String KEY = "termDictionary";
+
+    /** Returns the terms of the dictionary in {@code data}, or an empty list if it has none. */
+    static List<String> read(KeyValueStore data) throws IOException {
+        byte[] value = data.get(KEY);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        List<String> terms = new ArrayList<>();
+        try (JsonReader reader =
+                new JsonReader(new StringReader(new String(value, StandardCharsets.UTF_8)))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                terms.add(reader.nextString());
+            }
+            reader.endArray();
+        }
+        return terms;
+    }
+
+    /** Returns the sorted ids of those of {@code terms} that are in the dictionary. */
+    static int[] idsOf(List<String> dictionary, Set<String> terms) {
+        int[] ids = new int[terms.size()];
+        int count = 0;
+        for (int id = 0; id < dictionary.size() && count < ids.length; id++) {
+            if (terms.contains(dictionary.get(id))) {
+                ids[count++] = id;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Reads a JSON array of term ids into a sorted array without duplicates. Ids must be
+     * non-negative and, unless {@code limit} is negative, below {@code limit}.
+     */
+    static int[] readIds(JsonReader reader, int limit) throws IOException {
+        int[] ids = new int[8];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int id = reader.nextInt();
+            if (id < 0 || (limit >= 0 && id >= limit)) {
+                throw new IOException("Term id " + id + " is not in the dictionary");
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+        reader.endArray();
+        return sortedDistinct(ids, count);
+    }
+
+    /** Sorts the first {@code count} ids and drops duplicates, reusing {@code ids}. */
+    static int[] sortedDistinct(int[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+    }
+
+    /** Returns true if the sorted arrays share an id. */
+    static boolean intersects(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        // A short list probes a long one faster than walking both.
+        if (a.length * 8 < b.length) {
+            for (int id : a) {
+                if (Arrays.binarySearch(b, id) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                return true;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if sorted {@code set} contains every id of {@code ids}. */
+    static boolean containsAll(int[] set, int[] ids) {
+        for (int id : ids) {
+            if (Arrays.binarySearch(set, id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TermDictionary() {
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.odpsamplenetwork;
+
+import android.adservices.ondevicepersonalization.TrainingExampleRecord;
+import android.adservices.ondevicepersonalization.TrainingExamplesOutput;
+import android.util.Log;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Emits bounded pages of training examples starting from a resumption token.
+ *
+ * <p>Every record carries a compact token (a version byte followed by the varint position of the
+ * next example), so a later call that passes it back resumes exactly where this one stopped.
+ * A page ends at the end of the source. A token left at the end by an earlier page starts over
+ * from the first example, as every call did before paging. Examples within a page are generated
+ * and serialized in parallel but emitted in order.
+ */
+final class TrainingExamplePager {
+    static final int MAX_BYTES_PER_PAGE = 1 << 20;
+
+    private static final String TAG = SampleHandler.TAG;
+    private static final byte TOKEN_VERSION = 1;
+    private static final int MIN_CHUNK_SIZE = 8;
+
+    /** Produces the serialized {@code tf.Example} at a position. */
+    interface ExampleSource {
+        /** Returns the serialized example, or null when {@code position} is past the end. */
+        byte[] get(long position) throws Exception;
+    }
+
+    /**
+     * Adds one page of at most {@code pageSize} positions from {@code source} to {@code builder}
+     * and returns the record count. A position that fails is skipped, or ends the page like the
+     * end of the source if {@code stopAtFailure} is set.
+     *
+     * <p>Positions are generated in parallel chunks on {@code executor} and assembled in order,
+     * applying the same end-of-source, failure and byte-limit rules as a sequential scan. A chunk
+     * may overrun the byte limit, in which case the extra examples are discarded.
+     */
+    static int addPage(
+            ExampleSource source,
+            int pageSize,
+            boolean stopAtFailure,
+            byte[] resumptionToken,
+            TrainingExamplesOutput.Builder builder,
+            ListeningExecutorService executor,
+            int parallelism)
+            throws InterruptedException, ExecutionException {
+        long position = decodeToken(resumptionToken);
+        boolean restarted = false;
+        int records = 0;
+        // Failed positions count against the page too, so a broken source cannot spin.
+        int visited = 0;
+        long bytes = 0;
+        while (visited < pageSize && bytes < MAX_BYTES_PER_PAGE) {
+            Object[] results =
+                    generate(
+                            source,
+                            position,
+                            position + (pageSize - visited),
+                            stopAtFailure,
+                            executor,
+                            parallelism);
+            for (Object result : results) {
+                if (result instanceof Exception) {
+                    Log.w(TAG, "failure generating training example " + position,
+                            (Exception) result);
+                    if (!stopAtFailure) {
+                        position++;
+                        visited++;
+                        continue;
+                    }
+                }
+                if (result == null || result instanceof Exception) {
+                    if (visited > 0 || position == 0 || restarted) {
+                        return records;
+                    }
+                    // The token was left at the end by an earlier page.
+                    position = 0;
+                    restarted = true;
+                    break;
+                }
+                byte[] example = (byte[]) result;
+                position++;
+                builder.addTrainingExampleRecord(
+                        new TrainingExampleRecord.Builder()
+                                .setTrainingExample(example)
+                                .setResumptionToken(encodeToken(position))
+                                .build());
+                records++;
+                visited++;
+                bytes += example.length;
+                if (bytes >= MAX_BYTES_PER_PAGE) {
+                    return records;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Generates {@code [from, to)} in contiguous chunks. Each slot of the result holds the
+     * example bytes, null past the end of the source, or the exception it failed with.
+     */
+    private static Object[] generate(
+            ExampleSource source,
+            long from,
+            long to,
+            boolean stopAtFailure,
+            ListeningExecutorService executor,
+            int parallelism)
+            throws InterruptedException, ExecutionException {
+        int count = (int) (to - from);
+        Object[] results = new Object[count];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (count + parallelism - 1) / parallelism);
+        List<ListenableFuture<?>> chunks = new ArrayList<>();
+        for (int chunkStart = 0; chunkStart < count; chunkStart += chunkSize) {
+            int first = chunkStart;
+            int last = Math.min(count, chunkStart + chunkSize);
+            chunks.add(
+                    executor.submit(
+                            () -> {
+                                for (int i = first; i < last; i++) {
+                                    try {
+                                        results[i] = source.get(from + i);
+                                    } catch (Exception e) {
+                                        results[i] = e;
+                                    }
+                                    if (results[i] == null
+                                            || (stopAtFailure
+                                                    && results[i] instanceof Exception)) {
+                                        // Everything after the end of the page is unused.
+                                        break;
+                                    }
+                                }
+                            }));
+        }
+        // Completion of the futures publishes the chunk writes to this thread.
+        Futures.allAsList(chunks).get();
+        return results;
+    }
+
+    static byte[] encodeToken(long position) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(10);
+        out.write(TOKEN_VERSION);
+        long value = position;
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the position encoded in {@code token}, or 0 for a missing, unknown, truncated or
+     * out of range token.
+     */
+    static long decodeToken(byte[] token) {
+        if (token == null || token.length < 2 || token[0] != TOKEN_VERSION) {
+            return 0;
+        }
+        long result = 0;
+        for (int i = 1, shift = 0; i < token.length && shift < 64; i++, shift += 7) {
+            long bits = token[i] & 0x7F;
+            // The tenth byte holds bit 63 only; anything above it does not fit in a long.
+            if (shift == 63 && bits > 1) {
+                return 0;
+            }
+            result |= bits << shift;
+            if ((token[i] & 0x80) == 0) {
+                return result < 0 ? 0 : result;
+            }
+        }
+        return 0;
+    }
+
+    private TrainingExamplePager() {
+    }
+}
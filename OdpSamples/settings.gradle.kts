@@ -18,3 +18,4 @@ include(":odpsamplenetwork")
 include(":odpclient")
 include(":odptargetingapp1")
 include(":odptargetingapp2")
+include(":odpbenchmark")